@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class which instances hold a single row of a {@code Cursor}.
+ * <p>
+ * For a class named Model, the processor generates Model_RowMapper in the same package, with
+ * <ul>
+ * <li>PROJECTION, the column names of all {@link Column} fields in declaration order, to pass
+ * to {@code Query.Builder.setProjection()};</li>
+ * <li>INSTANCE, a {@code RowMapper} for {@code RxCursorLoader.rows()};</li>
+ * <li>read(Cursor), which reads the current row of a {@code Cursor} loaded with
+ * PROJECTION by fixed column indices.</li>
+ * </ul>
+ * The class must have a non-private constructor without arguments, and {@link Column} fields
+ * must be neither private nor final.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface CursorRow {
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.benchmark;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Read-only provider that returns {@link #ROW_COUNT} in-memory rows, so that benchmarks measure
+ * the loader rather than SQLite.
+ */
+public final class BenchmarkContentProvider extends ContentProvider {
+
+    public static final Uri CONTENT_URI = Uri.parse(
+            "content://com.doctoror.rxcursorloader.benchmark.provider/items");
+
+    static final int ROW_COUNT = 100;
+
+    private static final String[] COLUMNS = new String[]{"_id", "title", "size"};
+
+    @Nullable
+    private static volatile QueryGate sQueryGate;
+
+    /**
+     * Makes queries wait for the {@link QueryGate}, or stops it if null.
+     */
+    static void setQueryGate(@Nullable final QueryGate gate) {
+        sQueryGate = gate;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(
+            @NonNull final Uri uri,
+            @Nullable final String[] projection,
+            @Nullable final String selection,
+            @Nullable final String[] selectionArgs,
+            @Nullable final String sortOrder) {
+        final QueryGate gate = sQueryGate;
+        if (gate != null) {
+            gate.pass();
+        }
+
+        final MatrixCursor c = new MatrixCursor(COLUMNS, ROW_COUNT);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            c.addRow(new Object[]{i, "Item " + i, i * 1024L});
+        }
+        return c;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull final Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull final Uri uri, @Nullable final ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(
+            @NonNull final Uri uri,
+            @Nullable final String selection,
+            @Nullable final String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(
+            @NonNull final Uri uri,
+            @Nullable final ContentValues values,
+            @Nullable final String selection,
+            @Nullable final String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Holds queries until opened, so that a benchmark can act while a query is in progress.
+     */
+    static final class QueryGate {
+
+        private final CountDownLatch mEntered = new CountDownLatch(1);
+        private final CountDownLatch mOpened = new CountDownLatch(1);
+
+        /**
+         * Waits until a query is held by this gate.
+         */
+        void awaitEntered(final long timeout, @NonNull final TimeUnit unit)
+                throws InterruptedException, TimeoutException {
+            if (!mEntered.await(timeout, unit)) {
+                throw new TimeoutException("No query in " + timeout + " " + unit);
+            }
+        }
+
+        void open() {
+            mOpened.countDown();
+        }
+
+        private void pass() {
+            mEntered.countDown();
+            try {
+                mOpened.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.benchmark;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.os.Debug;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+/**
+ * Minimal measurement loop: runs warmup iterations, then measures every iteration separately
+ * and reports the median time and the mean number of allocations on the calling thread.
+ * <p>
+ * Results are written to logcat and reported as instrumentation status, so that CI can collect
+ * them from the am instrument output.
+ */
+final class BenchmarkRunner {
+
+    private static final String TAG = "RxCursorLoaderBenchmark";
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    interface Operation {
+
+        /**
+         * Runs one iteration.
+         *
+         * @return the measured time in nanoseconds
+         */
+        long run() throws Exception;
+    }
+
+    private BenchmarkRunner() {
+        throw new UnsupportedOperationException();
+    }
+
+    @SuppressWarnings("deprecation")
+    static void measure(
+            @NonNull final String name,
+            @NonNull final Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        final long[] times = new long[MEASURED_ITERATIONS];
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        try {
+            for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                times[i] = operation.run();
+            }
+        } finally {
+            Debug.stopAllocCounting();
+        }
+        final long allocations = Debug.getThreadAllocCount() / MEASURED_ITERATIONS;
+
+        Arrays.sort(times);
+        final long median = times[MEASURED_ITERATIONS / 2];
+        final long p90 = times[MEASURED_ITERATIONS * 9 / 10];
+
+        Log.i(TAG, name + ": median " + median + " ns, p90 " + p90 + " ns, "
+                + allocations + " allocations");
+
+        final Bundle status = new Bundle();
+        status.putLong(name + "_median_ns", median);
+        status.putLong(name + "_p90_ns", p90);
+        status.putLong(name + "_allocations", allocations);
+        final Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        instrumentation.sendStatus(2, status);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.benchmark;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import com.doctoror.rxcursorloader.RxCursorLoader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Benchmarks of the reload and emission path against {@link BenchmarkContentProvider}.
+ * <p>
+ * Run with {@code ./gradlew :benchmark:connectedAndroidTest} on a device with a fixed CPU
+ * clock. Allocations are counted on the benchmark thread only.
+ */
+@RunWith(AndroidJUnit4.class)
+public final class ReloadBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final ContentResolver mContentResolver = InstrumentationRegistry
+            .getInstrumentation().getContext().getContentResolver();
+
+    private final RxCursorLoader.Query mQuery = new RxCursorLoader.Query.Builder()
+            .setContentUri(BenchmarkContentProvider.CONTENT_URI)
+            .create();
+
+    /**
+     * Subscribe, load on the calling thread, emit and dispose.
+     */
+    @Test
+    public void coldLoad() throws Exception {
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setManagedCursors(Schedulers.trampoline())
+                .create();
+
+        for (final BackpressureStrategy strategy : BackpressureStrategy.values()) {
+            BenchmarkRunner.measure("coldLoad_" + strategy, new BenchmarkRunner.Operation() {
+
+                @Override
+                public long run() {
+                    final long start = System.nanoTime();
+                    RxCursorLoader
+                            .flowable(
+                                    mContentResolver,
+                                    mQuery,
+                                    Schedulers.trampoline(),
+                                    strategy,
+                                    options)
+                            .subscribe(IGNORE)
+                            .dispose();
+                    return System.nanoTime() - start;
+                }
+            });
+        }
+    }
+
+    /**
+     * Time from {@link ContentResolver#notifyChange} to the emission of the reloaded
+     * {@link Cursor}. As iterations run back to back, 1 / median is also the sequential reload
+     * throughput.
+     */
+    @Test
+    public void notificationToEmission() throws Exception {
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setManagedCursors(Schedulers.trampoline())
+                .setObserverDispatch(RxCursorLoader.Options.ObserverDispatch.BINDER)
+                .create();
+
+        for (final BackpressureStrategy strategy : BackpressureStrategy.values()) {
+            final Semaphore emissions = new Semaphore(0);
+            final Disposable disposable = RxCursorLoader
+                    .flowable(mContentResolver, mQuery, Schedulers.io(), strategy, options)
+                    .subscribe(releaseOnNext(emissions));
+            try {
+                awaitEmission(emissions);
+                BenchmarkRunner.measure(
+                        "notificationToEmission_" + strategy,
+                        new BenchmarkRunner.Operation() {
+
+                            @Override
+                            public long run() throws Exception {
+                                final long start = System.nanoTime();
+                                mContentResolver.notifyChange(
+                                        BenchmarkContentProvider.CONTENT_URI, null, false);
+                                awaitEmission(emissions);
+                                return System.nanoTime() - start;
+                            }
+                        });
+            } finally {
+                disposable.dispose();
+            }
+        }
+    }
+
+    /**
+     * Dispose while the query of a reload triggered by a notification is in progress. Release
+     * does not wait for the reload, it only clears the emitter and cancels the query, so this
+     * must not depend on the query time.
+     */
+    @Test
+    public void releaseDuringReload() throws Exception {
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setManagedCursors(Schedulers.trampoline())
+                .setObserverDispatch(RxCursorLoader.Options.ObserverDispatch.BINDER)
+                .create();
+
+        BenchmarkRunner.measure("releaseDuringReload", new BenchmarkRunner.Operation() {
+
+            @Override
+            public long run() throws Exception {
+                final Semaphore emissions = new Semaphore(0);
+                final Disposable disposable = RxCursorLoader
+                        .flowable(
+                                mContentResolver,
+                                mQuery,
+                                Schedulers.io(),
+                                BackpressureStrategy.LATEST,
+                                options)
+                        .subscribe(releaseOnNext(emissions));
+                awaitEmission(emissions);
+
+                final BenchmarkContentProvider.QueryGate gate
+                        = new BenchmarkContentProvider.QueryGate();
+                BenchmarkContentProvider.setQueryGate(gate);
+                try {
+                    mContentResolver.notifyChange(
+                            BenchmarkContentProvider.CONTENT_URI, null, false);
+                    gate.awaitEntered(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+                    final long start = System.nanoTime();
+                    disposable.dispose();
+                    return System.nanoTime() - start;
+                } finally {
+                    BenchmarkContentProvider.setQueryGate(null);
+                    gate.open();
+                }
+            }
+        });
+    }
+
+    private static void awaitEmission(@NonNull final Semaphore emissions) throws Exception {
+        if (!emissions.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new TimeoutException("No emission in " + TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    @NonNull
+    private static Consumer<Cursor> releaseOnNext(@NonNull final Semaphore emissions) {
+        return new Consumer<Cursor>() {
+
+            @Override
+            public void accept(final Cursor cursor) {
+                emissions.release();
+            }
+        };
+    }
+
+    private static final Consumer<Cursor> IGNORE = new Consumer<Cursor>() {
+
+        @Override
+        public void accept(final Cursor cursor) {
+            // Closed by the managed lifecycle
+        }
+    };
+}
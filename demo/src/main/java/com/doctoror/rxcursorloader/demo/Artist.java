@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.demo;
+
+import com.doctoror.rxcursorloader.annotations.Column;
+import com.doctoror.rxcursorloader.annotations.CursorRow;
+
+import android.provider.MediaStore;
+
+/**
+ * A row of {@link ArtistsQuery}. The projection and the reader are generated as
+ * Artist_RowMapper.
+ */
+@CursorRow
+final class Artist {
+
+    @Column(MediaStore.Audio.Artists._ID)
+    long id;
+
+    @Column(MediaStore.Audio.Artists.NUMBER_OF_ALBUMS)
+    int numberOfAlbums;
+
+    @Column(MediaStore.Audio.Artists.ARTIST)
+    String artist;
+}
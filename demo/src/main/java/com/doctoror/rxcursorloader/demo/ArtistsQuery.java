@@ -32,12 +32,9 @@ final class ArtistsQuery {
     private static final Uri URI = new Uri.Builder().scheme("content")
             .authority(DemoContentProvider.AUTHORITY).build();
 
-    static final String[] COLUMNS = new String[]{
-            MediaStore.Audio.Artists._ID,
-            MediaStore.Audio.Artists.NUMBER_OF_ALBUMS,
-            MediaStore.Audio.Artists.ARTIST
-    };
+    static final String[] COLUMNS = Artist_RowMapper.PROJECTION;
 
+    // Ordinals in the projection, which follows the field order of Artist
     static final int COLUMN_NUMBER_OF_ALBUMS = 1;
     static final int COLUMN_ARTIST = 2;
 
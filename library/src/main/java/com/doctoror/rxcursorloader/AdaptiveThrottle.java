@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Enforces a minimum interval between the end of a reload and the start of the next one, and
+ * adapts it to the measured reload duration and the notification rate.
+ * <p>
+ * The interval is the larger of two parts:
+ * <ul>
+ * <li>the duty cycle part, which keeps the share of time spent reloading under the max duty
+ * cycle, computed from a moving average of reload durations;</li>
+ * <li>the backoff part, which doubles every time more than one notification arrived while
+ * waiting for a reload, and halves every time only one did.</li>
+ * </ul>
+ * Both are bounded by the max interval. Notifications that arrive during a reload or while
+ * waiting are merged into a single reload, like in {@link ChangeCoalescer}.
+ */
+final class AdaptiveThrottle {
+
+    /**
+     * The first step of the backoff part.
+     */
+    private static final long BACKOFF_STEP_MILLIS = 50;
+
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+
+    @NonNull
+    private final Scheduler mScheduler;
+
+    @NonNull
+    private final Runnable mTarget;
+
+    @NonNull
+    private final LoaderStats mStats;
+
+    private final float mMaxDutyCycle;
+    private final long mMaxIntervalMillis;
+
+    private volatile boolean mReloading;
+    private volatile long mNextReloadTime;
+    private volatile long mBackoffMillis;
+    private volatile Disposable mTimer;
+    private volatile boolean mReleased;
+
+    /**
+     * Moving average of reload durations. Accessed only by the reloading thread.
+     */
+    private long mAverageReloadNanos = -1;
+
+    AdaptiveThrottle(
+            @NonNull final Scheduler scheduler,
+            @NonNull final Runnable target,
+            @NonNull final LoaderStats stats,
+            final float maxDutyCycle,
+            final long maxIntervalMillis) {
+        mScheduler = scheduler;
+        mTarget = target;
+        mStats = stats;
+        mMaxDutyCycle = maxDutyCycle;
+        mMaxIntervalMillis = maxIntervalMillis;
+    }
+
+    void onNotification() {
+        if (mPendingCount.getAndIncrement() == 0 && !mReloading) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Must be called when a reload starts, for any reason.
+     */
+    void onReloadStarted() {
+        mReloading = true;
+    }
+
+    /**
+     * Must be called when a reload finishes, for any reason.
+     *
+     * @param durationNanos the time spent by the provider on the reload
+     */
+    void onReloadFinished(final long durationNanos) {
+        mAverageReloadNanos = mAverageReloadNanos < 0
+                ? durationNanos
+                : mAverageReloadNanos + (durationNanos - mAverageReloadNanos) / 4;
+
+        final long dutyCycleMillis = TimeUnit.NANOSECONDS.toMillis(
+                (long) (mAverageReloadNanos * (1f - mMaxDutyCycle) / mMaxDutyCycle));
+        final long interval = Math.min(
+                mMaxIntervalMillis, Math.max(dutyCycleMillis, mBackoffMillis));
+
+        mNextReloadTime = mScheduler.now(TimeUnit.MILLISECONDS) + interval;
+        mReloading = false;
+        if (mPendingCount.get() != 0) {
+            // Notified during the reload
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Must be called when a reload was requested but deferred without reloading, so that the
+     * notifications that arrive meanwhile are not held back by the reload that did not happen.
+     */
+    void onReloadSkipped() {
+        mReloading = false;
+        if (mPendingCount.get() != 0) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * @return the number of notifications merged by this {@link AdaptiveThrottle}
+     */
+    long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    void release() {
+        mReleased = true;
+        final Disposable timer = mTimer;
+        if (timer != null) {
+            timer.dispose();
+        }
+    }
+
+    private void scheduleNext() {
+        if (mReleased || !mScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        final long delay = Math.max(
+                0, mNextReloadTime - mScheduler.now(TimeUnit.MILLISECONDS));
+        mTimer = mScheduler.scheduleDirect(mTimerRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private final Runnable mTimerRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            mScheduled.set(false);
+            if (mReleased) {
+                return;
+            }
+
+            final int count = mPendingCount.getAndSet(0);
+            if (count == 0) {
+                return;
+            }
+            if (count > 1) {
+                mStats.onNotificationsCoalesced(count - 1);
+                mCoalescedCount.addAndGet(count - 1);
+                mBackoffMillis = Math.min(
+                        mMaxIntervalMillis, Math.max(BACKOFF_STEP_MILLIS, mBackoffMillis * 2));
+            } else {
+                final long halved = mBackoffMillis / 2;
+                mBackoffMillis = halved >= BACKOFF_STEP_MILLIS / 2 ? halved : 0;
+            }
+            // Until the reload finishes, so that notifications do not supersede it right away
+            mReloading = true;
+            mTarget.run();
+        }
+    };
+}
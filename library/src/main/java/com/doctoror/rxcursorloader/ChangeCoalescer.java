@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+/**
+ * Merges bursts of content change notifications into a single call of the target
+ * {@link Runnable}.
+ * <p>
+ * The first notification of a burst schedules a timer for the quiet window. Subsequent
+ * notifications only record their arrival time, so a burst of N notifications costs a single
+ * scheduled task. When the timer fires it either runs the target or re-arms itself for the
+ * remainder of the quiet window, bounded by the max latency counted from the burst start.
+ */
+final class ChangeCoalescer {
+
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+
+    @NonNull
+    private final Scheduler mScheduler;
+
+    @NonNull
+    private final Runnable mTarget;
+
+    @NonNull
+    private final LoaderStats mStats;
+
+    private final long mQuietWindowMillis;
+    private final long mMaxLatencyMillis;
+
+    private volatile long mBurstStartTime;
+    private volatile long mLastNotificationTime;
+
+    private volatile Disposable mTimer;
+    private volatile boolean mReleased;
+
+    ChangeCoalescer(
+            @NonNull final Scheduler scheduler,
+            @NonNull final Runnable target,
+            @NonNull final LoaderStats stats,
+            final long quietWindowMillis,
+            final long maxLatencyMillis) {
+        mScheduler = scheduler;
+        mTarget = target;
+        mStats = stats;
+        mQuietWindowMillis = quietWindowMillis;
+        mMaxLatencyMillis = maxLatencyMillis;
+    }
+
+    void onNotification() {
+        final long now = mScheduler.now(TimeUnit.MILLISECONDS);
+        mLastNotificationTime = now;
+        if (mPendingCount.getAndIncrement() == 0) {
+            mBurstStartTime = now;
+            schedule(mQuietWindowMillis);
+        }
+    }
+
+    /**
+     * @return the number of notifications merged by this {@link ChangeCoalescer}
+     */
+    long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    void release() {
+        mReleased = true;
+        final Disposable timer = mTimer;
+        if (timer != null) {
+            timer.dispose();
+        }
+    }
+
+    private void schedule(final long delayMillis) {
+        if (!mReleased) {
+            mTimer = mScheduler.scheduleDirect(mTimerRunnable, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private final Runnable mTimerRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+            if (mReleased) {
+                return;
+            }
+
+            final long deadline = Math.min(
+                    mLastNotificationTime + mQuietWindowMillis,
+                    mBurstStartTime + mMaxLatencyMillis);
+
+            final long now = mScheduler.now(TimeUnit.MILLISECONDS);
+            if (now < deadline) {
+                schedule(deadline - now);
+                return;
+            }
+
+            final int count = mPendingCount.getAndSet(0);
+            if (count > 1) {
+                mStats.onNotificationsCoalesced(count - 1);
+                mCoalescedCount.addAndGet(count - 1);
+            }
+            mTarget.run();
+        }
+    };
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Decides whether a content change notification may affect the loaded result. Reloads for
+ * notifications that are not relevant are skipped.
+ * <p>
+ * Called on the thread that dispatches content change notifications, so implementations must be
+ * fast and must not block.
+ *
+ * @see RxCursorLoader.Options.Builder#setChangeFilter(ChangeFilter)
+ */
+public interface ChangeFilter {
+
+    /**
+     * @param query         the {@link RxCursorLoader.Query} of the loader
+     * @param changedUri    the changed {@link Uri}, or null if unknown, for instance on API
+     *                      levels below 16
+     * @param lastLoadedIds ids of the last loaded result, or null if nothing was loaded yet, or
+     *                      {@link RxCursorLoader.Options.Builder#setIdColumn(String)} is not set
+     * @return true if the change may affect the result and the query must be reloaded
+     */
+    boolean isRelevant(
+            @NonNull RxCursorLoader.Query query,
+            @Nullable Uri changedUri,
+            @Nullable IdSet lastLoadedIds);
+}
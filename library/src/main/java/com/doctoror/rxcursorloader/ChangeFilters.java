@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.net.Uri;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Built-in {@link ChangeFilter} implementations.
+ */
+public final class ChangeFilters {
+
+    private ChangeFilters() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a {@link ChangeFilter} that skips changes of single rows which were not in the
+     * last loaded result, i.e. a changed {@link Uri} that is the query {@link Uri} followed by a
+     * numeric id, like the ones built with {@link android.content.ContentUris#withAppendedId(Uri,
+     * long)}, where the id is not in the last loaded {@link IdSet}.
+     * <p>
+     * Changes of unknown or other {@link Uri}s are always relevant, as is everything before the
+     * first load. Requires {@link RxCursorLoader.Options.Builder#setIdColumn(String)}.
+     * <p>
+     * Use only with providers that notify about inserted rows with the directory {@link Uri},
+     * and only if an update can not make a row match the selection, otherwise such changes are
+     * missed.
+     *
+     * @return the {@link ChangeFilter}
+     */
+    @NonNull
+    public static ChangeFilter idInResult() {
+        return IdInResultFilter.INSTANCE;
+    }
+
+    /**
+     * @return true if the {@link ChangeFilter} needs the {@link IdSet} of the last loaded
+     * result, which is collected only if the id column is set
+     */
+    static boolean requiresIdColumn(@Nullable final ChangeFilter changeFilter) {
+        return changeFilter == IdInResultFilter.INSTANCE;
+    }
+
+    private static final class IdInResultFilter implements ChangeFilter {
+
+        static final IdInResultFilter INSTANCE = new IdInResultFilter();
+
+        @Override
+        public boolean isRelevant(
+                @NonNull final RxCursorLoader.Query query,
+                @Nullable final Uri changedUri,
+                @Nullable final IdSet lastLoadedIds) {
+            if (changedUri == null || lastLoadedIds == null) {
+                return true;
+            }
+            final long id = parseChildId(query.contentUri, changedUri);
+            return id == -1 || lastLoadedIds.contains(id);
+        }
+
+        /**
+         * @return the id if changedUri is contentUri followed by a single numeric segment,
+         * -1 otherwise
+         */
+        private static long parseChildId(
+                @NonNull final Uri contentUri,
+                @NonNull final Uri changedUri) {
+            if (!equals(contentUri.getAuthority(), changedUri.getAuthority())) {
+                return -1;
+            }
+            final List<String> parentSegments = contentUri.getPathSegments();
+            final List<String> segments = changedUri.getPathSegments();
+            if (segments.size() != parentSegments.size() + 1
+                    || !segments.subList(0, parentSegments.size()).equals(parentSegments)) {
+                return -1;
+            }
+            final String last = segments.get(segments.size() - 1);
+            if (last.isEmpty() || last.length() > 18) {
+                return -1;
+            }
+            for (int i = 0; i < last.length(); i++) {
+                final char ch = last.charAt(i);
+                if (ch < '0' || ch > '9') {
+                    return -1;
+                }
+            }
+            return Long.parseLong(last);
+        }
+
+        private static boolean equals(@Nullable final String a, @Nullable final String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * {@link ContentResolver} queries that support {@link CancellationSignal} where available.
+ * <p>
+ * Signals are passed around as {@link Object} so that callers do not reference
+ * {@link CancellationSignal} on API levels where it does not exist.
+ */
+final class ContentResolverCompat {
+
+    private ContentResolverCompat() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return new CancellationSignal, or null if not supported on this API level
+     */
+    @Nullable
+    static Object newCancellationSignal() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return Api16.newCancellationSignal();
+        }
+        return null;
+    }
+
+    static void cancel(@Nullable final Object cancellationSignal) {
+        if (cancellationSignal != null) {
+            Api16.cancel(cancellationSignal);
+        }
+    }
+
+    static boolean isCanceled(@Nullable final Object cancellationSignal) {
+        return cancellationSignal != null && Api16.isCanceled(cancellationSignal);
+    }
+
+    /**
+     * Runs the {@link RxCursorLoader.Query}.
+     *
+     * @param resolver           the {@link ContentResolver} to use
+     * @param query              the {@link RxCursorLoader.Query} to run
+     * @param cancellationSignal the signal obtained from {@link #newCancellationSignal()}
+     * @return the {@link Cursor}, or null if the provider returned null
+     * @throws RuntimeException if the query failed or was cancelled
+     */
+    @Nullable
+    static Cursor query(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            @Nullable final Object cancellationSignal) {
+        if (cancellationSignal != null) {
+            return Api16.query(resolver, query, cancellationSignal);
+        }
+        return resolver.query(
+                query.contentUri,
+                query.projection,
+                query.selection,
+                query.selectionArgs,
+                query.sortOrder);
+    }
+
+    /**
+     * @return true if {@link #queryPageWithArgs(ContentResolver, RxCursorLoader.Query, int, int,
+     * Object)} is supported on this API level
+     */
+    static boolean isQueryArgsSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O;
+    }
+
+    /**
+     * Runs the {@link RxCursorLoader.Query} for a single page using
+     * {@link ContentResolver#QUERY_ARG_LIMIT} and {@link ContentResolver#QUERY_ARG_OFFSET}.
+     * Providers may ignore these arguments, which must be checked with
+     * {@link #areLimitAndOffsetHonored(Cursor)}.
+     * <p>
+     * Must be called only if {@link #isQueryArgsSupported()} returns true.
+     *
+     * @param resolver           the {@link ContentResolver} to use
+     * @param query              the {@link RxCursorLoader.Query} to run
+     * @param limit              the maximum number of rows
+     * @param offset             the number of rows to skip
+     * @param cancellationSignal the signal obtained from {@link #newCancellationSignal()}
+     * @return the {@link Cursor}, or null if the provider returned null
+     * @throws RuntimeException if the query failed or was cancelled
+     */
+    @Nullable
+    static Cursor queryPageWithArgs(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            final int limit,
+            final int offset,
+            @Nullable final Object cancellationSignal) {
+        return Api26.queryPage(resolver, query, limit, offset, cancellationSignal);
+    }
+
+    /**
+     * @return true if the provider reported that it applied the limit and offset arguments
+     * passed to {@link #queryPageWithArgs(ContentResolver, RxCursorLoader.Query, int, int,
+     * Object)}
+     */
+    static boolean areLimitAndOffsetHonored(@NonNull final Cursor c) {
+        return isQueryArgsSupported() && Api26.areLimitAndOffsetHonored(c);
+    }
+
+    /**
+     * Runs the {@link RxCursorLoader.Query} for a single page by appending LIMIT and OFFSET to
+     * the sort order. This is what most SQLite backed providers accept on all API levels.
+     *
+     * @param resolver           the {@link ContentResolver} to use
+     * @param query              the {@link RxCursorLoader.Query} to run. Sort order must be set.
+     * @param limit              the maximum number of rows
+     * @param offset             the number of rows to skip
+     * @param cancellationSignal the signal obtained from {@link #newCancellationSignal()}
+     * @return the {@link Cursor}, or null if the provider returned null
+     * @throws RuntimeException if the query failed or was cancelled
+     */
+    @Nullable
+    static Cursor queryPageWithSortOrder(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            final int limit,
+            final int offset,
+            @Nullable final Object cancellationSignal) {
+        final RxCursorLoader.Query page = new RxCursorLoader.Query();
+        page.contentUri = query.contentUri;
+        page.projection = query.projection;
+        page.selection = query.selection;
+        page.selectionArgs = query.selectionArgs;
+        page.sortOrder = query.sortOrder + " LIMIT " + limit + " OFFSET " + offset;
+        return query(resolver, page, cancellationSignal);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private static final class Api26 {
+
+        @Nullable
+        static Cursor queryPage(
+                @NonNull final ContentResolver resolver,
+                @NonNull final RxCursorLoader.Query query,
+                final int limit,
+                final int offset,
+                @Nullable final Object cancellationSignal) {
+            final Bundle args = new Bundle();
+            args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, query.selection);
+            args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS,
+                    query.selectionArgs);
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, query.sortOrder);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
+            args.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
+
+            return resolver.query(
+                    query.contentUri,
+                    query.projection,
+                    args,
+                    (CancellationSignal) cancellationSignal);
+        }
+
+        static boolean areLimitAndOffsetHonored(@NonNull final Cursor c) {
+            final Bundle extras = c.getExtras();
+            final String[] honoredArgs = extras != null
+                    ? extras.getStringArray(ContentResolver.EXTRA_HONORED_ARGS)
+                    : null;
+            if (honoredArgs == null) {
+                return false;
+            }
+            boolean limitHonored = false;
+            boolean offsetHonored = false;
+            for (final String arg : honoredArgs) {
+                if (ContentResolver.QUERY_ARG_LIMIT.equals(arg)) {
+                    limitHonored = true;
+                } else if (ContentResolver.QUERY_ARG_OFFSET.equals(arg)) {
+                    offsetHonored = true;
+                }
+            }
+            return limitHonored && offsetHonored;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class Api16 {
+
+        @NonNull
+        static Object newCancellationSignal() {
+            return new CancellationSignal();
+        }
+
+        static void cancel(@NonNull final Object cancellationSignal) {
+            ((CancellationSignal) cancellationSignal).cancel();
+        }
+
+        static boolean isCanceled(@NonNull final Object cancellationSignal) {
+            return ((CancellationSignal) cancellationSignal).isCanceled();
+        }
+
+        @Nullable
+        static Cursor query(
+                @NonNull final ContentResolver resolver,
+                @NonNull final RxCursorLoader.Query query,
+                @NonNull final Object cancellationSignal) {
+            return resolver.query(
+                    query.contentUri,
+                    query.projection,
+                    query.selection,
+                    query.selectionArgs,
+                    query.sortOrder,
+                    (CancellationSignal) cancellationSignal);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A loaded {@link Cursor} with the changes against the previously emitted one.
+ * <p>
+ * Rows are matched by the id column. Positions of removed rows and source positions of moved
+ * rows refer to the previous {@link Cursor}. All other positions refer to the new
+ * {@link Cursor}. A row is reported as changed if any of its values changed, and as moved if
+ * its position relative to other retained rows changed. A row can be both changed and moved.
+ *
+ * @see RxCursorLoader#changeSets(android.content.ContentResolver, RxCursorLoader.Query,
+ * io.reactivex.Scheduler, RxCursorLoader.Options, String)
+ */
+public final class CursorChangeSet {
+
+    @NonNull
+    private final Cursor mCursor;
+
+    private final boolean mInitial;
+
+    @NonNull
+    private final int[] mInsertedPositions;
+
+    @NonNull
+    private final int[] mRemovedPositions;
+
+    @NonNull
+    private final int[] mChangedPositions;
+
+    @NonNull
+    private final int[] mMovedFromPositions;
+
+    @NonNull
+    private final int[] mMovedToPositions;
+
+    CursorChangeSet(
+            @NonNull final Cursor cursor,
+            final boolean initial,
+            @NonNull final int[] insertedPositions,
+            @NonNull final int[] removedPositions,
+            @NonNull final int[] changedPositions,
+            @NonNull final int[] movedFromPositions,
+            @NonNull final int[] movedToPositions) {
+        mCursor = cursor;
+        mInitial = initial;
+        mInsertedPositions = insertedPositions;
+        mRemovedPositions = removedPositions;
+        mChangedPositions = changedPositions;
+        mMovedFromPositions = movedFromPositions;
+        mMovedToPositions = movedToPositions;
+    }
+
+    /**
+     * @return the new {@link Cursor}
+     */
+    @NonNull
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * @return true if this is the first load, in which case all rows are reported as inserted
+     */
+    public boolean isInitial() {
+        return mInitial;
+    }
+
+    /**
+     * @return true if anything changed
+     */
+    public boolean hasChanges() {
+        return mInsertedPositions.length != 0
+                || mRemovedPositions.length != 0
+                || mChangedPositions.length != 0
+                || mMovedFromPositions.length != 0;
+    }
+
+    /**
+     * @return positions of inserted rows in the new {@link Cursor}, ascending
+     */
+    @NonNull
+    public int[] getInsertedPositions() {
+        return mInsertedPositions;
+    }
+
+    /**
+     * @return positions of removed rows in the previous {@link Cursor}, ascending
+     */
+    @NonNull
+    public int[] getRemovedPositions() {
+        return mRemovedPositions;
+    }
+
+    /**
+     * @return positions of changed rows in the new {@link Cursor}, ascending
+     */
+    @NonNull
+    public int[] getChangedPositions() {
+        return mChangedPositions;
+    }
+
+    /**
+     * @return positions of moved rows in the previous {@link Cursor}. The element at index i
+     * corresponds to the element at index i of {@link #getMovedToPositions()}.
+     */
+    @NonNull
+    public int[] getMovedFromPositions() {
+        return mMovedFromPositions;
+    }
+
+    /**
+     * @return positions of moved rows in the new {@link Cursor}, ascending
+     */
+    @NonNull
+    public int[] getMovedToPositions() {
+        return mMovedToPositions;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import io.reactivex.functions.Function;
+
+/**
+ * Computes a {@link CursorChangeSet} of every {@link Cursor} against the previous one.
+ * <p>
+ * Only (id, row hash) pairs of the previous {@link Cursor} are kept, so the previous
+ * {@link Cursor} may be closed. Reads every row, which also fills the {@link Cursor} window.
+ * <p>
+ * Not thread safe, must be used for a single sequential stream.
+ */
+final class CursorDiffer implements Function<Cursor, CursorChangeSet> {
+
+    private static final int[] EMPTY = new int[0];
+
+    @NonNull
+    private final String mIdColumn;
+
+    private LongIntHashMap mPreviousPositions;
+    private long[] mPreviousHashes;
+
+    CursorDiffer(@NonNull final String idColumn) {
+        mIdColumn = idColumn;
+    }
+
+    @Override
+    public CursorChangeSet apply(final Cursor c) {
+        final int count;
+        final long[] ids;
+        final long[] hashes;
+        final LongIntHashMap positions;
+        try {
+            final int idColumnIndex = c.getColumnIndexOrThrow(mIdColumn);
+            count = c.getCount();
+
+            ids = new long[count];
+            hashes = new long[count];
+            positions = new LongIntHashMap(count);
+
+            c.moveToPosition(-1);
+            for (int i = 0; c.moveToNext(); i++) {
+                final long id = c.getLong(idColumnIndex);
+                ids[i] = id;
+                hashes[i] = CursorHashing.hashRow(c, CursorHashing.SEED);
+                if (positions.get(id) == -1) {
+                    positions.put(id, i);
+                }
+            }
+            c.moveToPosition(-1);
+        } catch (RuntimeException e) {
+            // Not emitted, nobody else is going to close it
+            c.close();
+            throw e;
+        }
+
+        final CursorChangeSet changeSet = mPreviousPositions == null
+                ? initial(c, count)
+                : diff(c, ids, hashes);
+
+        mPreviousPositions = positions;
+        mPreviousHashes = hashes;
+        return changeSet;
+    }
+
+    @NonNull
+    private static CursorChangeSet initial(@NonNull final Cursor c, final int count) {
+        final int[] inserted = new int[count];
+        for (int i = 0; i < count; i++) {
+            inserted[i] = i;
+        }
+        return new CursorChangeSet(c, true, inserted, EMPTY, EMPTY, EMPTY, EMPTY);
+    }
+
+    @NonNull
+    private CursorChangeSet diff(
+            @NonNull final Cursor c,
+            @NonNull final long[] ids,
+            @NonNull final long[] hashes) {
+        final int count = ids.length;
+        final int previousCount = mPreviousHashes.length;
+
+        final boolean[] retainedPrevious = new boolean[previousCount];
+        final int[] retainedFrom = new int[count];
+        final int[] retainedTo = new int[count];
+        int retainedCount = 0;
+
+        final int[] inserted = new int[count];
+        int insertedCount = 0;
+
+        final int[] changed = new int[count];
+        int changedCount = 0;
+
+        for (int i = 0; i < count; i++) {
+            final int previousPosition = mPreviousPositions.get(ids[i]);
+            if (previousPosition == -1 || retainedPrevious[previousPosition]) {
+                inserted[insertedCount++] = i;
+            } else {
+                retainedPrevious[previousPosition] = true;
+                if (mPreviousHashes[previousPosition] != hashes[i]) {
+                    changed[changedCount++] = i;
+                }
+                retainedFrom[retainedCount] = previousPosition;
+                retainedTo[retainedCount] = i;
+                retainedCount++;
+            }
+        }
+
+        final int[] removed = new int[previousCount - retainedCount];
+        int removedCount = 0;
+        for (int i = 0; i < previousCount; i++) {
+            if (!retainedPrevious[i]) {
+                removed[removedCount++] = i;
+            }
+        }
+
+        // Rows in the longest subsequence that kept their relative order are not moved
+        final boolean[] inOrder = longestIncreasingSubsequence(retainedFrom, retainedCount);
+        final int[] movedFrom = new int[retainedCount];
+        final int[] movedTo = new int[retainedCount];
+        int movedCount = 0;
+        for (int i = 0; i < retainedCount; i++) {
+            if (!inOrder[i]) {
+                movedFrom[movedCount] = retainedFrom[i];
+                movedTo[movedCount] = retainedTo[i];
+                movedCount++;
+            }
+        }
+
+        return new CursorChangeSet(
+                c,
+                false,
+                Arrays.copyOf(inserted, insertedCount),
+                removed,
+                Arrays.copyOf(changed, changedCount),
+                Arrays.copyOf(movedFrom, movedCount),
+                Arrays.copyOf(movedTo, movedCount));
+    }
+
+    /**
+     * @param values distinct values
+     * @param length the number of values to use
+     * @return flags of values that belong to a longest strictly increasing subsequence
+     */
+    @NonNull
+    static boolean[] longestIncreasingSubsequence(
+            @NonNull final int[] values,
+            final int length) {
+        final int[] tails = new int[length];
+        final int[] predecessors = new int[length];
+        int tailsLength = 0;
+
+        for (int i = 0; i < length; i++) {
+            int low = 0;
+            int high = tailsLength;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == tailsLength) {
+                tailsLength++;
+            }
+        }
+
+        final boolean[] result = new boolean[length];
+        for (int i = tailsLength > 0 ? tails[tailsLength - 1] : -1; i >= 0;
+                i = predecessors[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+}
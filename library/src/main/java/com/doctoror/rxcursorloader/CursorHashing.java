@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.annotation.TargetApi;
+import android.database.Cursor;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 64-bit FNV-1a hashing of {@link Cursor} contents.
+ */
+final class CursorHashing {
+
+    static final long SEED = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private CursorHashing() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Hashes all columns of the current row.
+     *
+     * @param c    the {@link Cursor} positioned at the row to hash
+     * @param hash the hash to continue from, {@link #SEED} for a new hash
+     * @return the new hash
+     */
+    static long hashRow(@NonNull final Cursor c, long hash) {
+        final int columnCount = c.getColumnCount();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            for (int i = 0; i < columnCount; i++) {
+                hash = hashColumn(c, i, hash);
+            }
+        } else {
+            for (int i = 0; i < columnCount; i++) {
+                hash = hashString(c.getString(i), hash);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes column names and all rows, and moves the {@link Cursor} before the first row.
+     *
+     * @param c the {@link Cursor} to hash
+     * @return the hash
+     */
+    static long hashCursor(@NonNull final Cursor c) {
+        long hash = SEED;
+        for (final String columnName : c.getColumnNames()) {
+            hash = hashString(columnName, hash);
+        }
+        hash = hashLong(c.getCount(), hash);
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            hash = hashRow(c, hash);
+        }
+        c.moveToPosition(-1);
+        return hash;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static long hashColumn(@NonNull final Cursor c, final int column, long hash) {
+        final int type = c.getType(column);
+        hash = hashLong(type, hash);
+        switch (type) {
+            case Cursor.FIELD_TYPE_NULL:
+                return hash;
+
+            case Cursor.FIELD_TYPE_INTEGER:
+                return hashLong(c.getLong(column), hash);
+
+            case Cursor.FIELD_TYPE_FLOAT:
+                return hashLong(Double.doubleToLongBits(c.getDouble(column)), hash);
+
+            case Cursor.FIELD_TYPE_BLOB:
+                final byte[] blob = c.getBlob(column);
+                for (final byte b : blob) {
+                    hash = (hash ^ (b & 0xff)) * PRIME;
+                }
+                return hash;
+
+            default:
+                return hashString(c.getString(column), hash);
+        }
+    }
+
+    static long hashLong(final long value, long hash) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return hash;
+    }
+
+    static long hashString(final String value, long hash) {
+        if (value == null) {
+            return hashLong(-1L, hash);
+        }
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            hash = (hash ^ (ch & 0xff)) * PRIME;
+            hash = (hash ^ (ch >>> 8)) * PRIME;
+        }
+        return hashLong(length, hash);
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import org.reactivestreams.Publisher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+/**
+ * Shares loaders between subscribers of equal {@link RxCursorLoader.Query} instances.
+ * <p>
+ * All subscribers of an equal {@link RxCursorLoader.Query} are served by a single loader, so
+ * the ContentObserver is registered and the query is run once regardless of the number of
+ * subscribers. The loader is started by the first subscriber and released when the last one
+ * disposes. A late subscriber immediately receives the last loaded {@link Cursor}.
+ * <p>
+ * Every subscriber receives its own {@link Cursor} handle, which has its own position and
+ * must be closed by the subscriber, like a {@link Cursor} emitted by
+ * {@link RxCursorLoader#flowable(ContentResolver, RxCursorLoader.Query, Scheduler,
+ * BackpressureStrategy)}. Closing a handle does not affect other subscribers. The underlying
+ * {@link Cursor} is closed when it is superseded by a newer one and all handles to it are
+ * closed.
+ * <p>
+ * If {@link RxCursorLoader.Options.Builder#setManagedCursors(Scheduler)} is set, it applies
+ * to the handles of every subscriber.
+ */
+public final class CursorLoaderRegistry {
+
+    private final Map<RxCursorLoader.Query, Loader> mLoaders
+            = new HashMap<>();
+
+    @NonNull
+    private final ContentResolver mContentResolver;
+
+    @NonNull
+    private final Scheduler mScheduler;
+
+    @NonNull
+    private final RxCursorLoader.Options mOptions;
+
+    /**
+     * @param resolver  {@link ContentResolver} to use
+     * @param scheduler the {@link Scheduler} to load and emit items from
+     */
+    public CursorLoaderRegistry(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Scheduler scheduler) {
+        this(resolver, scheduler, new RxCursorLoader.Options.Builder().create());
+    }
+
+    /**
+     * @param resolver  {@link ContentResolver} to use
+     * @param scheduler the {@link Scheduler} to load and emit items from
+     * @param options   the {@link RxCursorLoader.Options} to use for every loader
+     */
+    public CursorLoaderRegistry(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Scheduler scheduler,
+            @NonNull final RxCursorLoader.Options options) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (scheduler == null) {
+            throw new NullPointerException("Scheduler must not be null");
+        }
+        //noinspection ConstantConditions
+        if (options == null) {
+            throw new NullPointerException("Options must not be null");
+        }
+        mContentResolver = resolver;
+        mScheduler = scheduler;
+        mOptions = options;
+    }
+
+    /**
+     * Returns a {@link Flowable} that emits handles to the {@link Cursor} loaded by the shared
+     * loader for this {@link RxCursorLoader.Query}. Slow subscribers receive only the latest
+     * {@link Cursor}.
+     *
+     * @param query the {@link RxCursorLoader.Query} to use
+     * @return new {@link Flowable}
+     */
+    @NonNull
+    public Flowable<Cursor> flowable(@NonNull final RxCursorLoader.Query query) {
+        //noinspection ConstantConditions
+        if (query == null) {
+            throw new NullPointerException("Query must not be null");
+        }
+
+        final Flowable<Cursor> handles = Flowable
+                .defer(new Callable<Publisher<RefCountedCursor>>() {
+
+                    @Override
+                    public Publisher<RefCountedCursor> call() {
+                        final Loader loader = acquireLoader(query);
+                        return loader.flowable.doFinally(new LoaderReference(query, loader));
+                    }
+                })
+                .onBackpressureLatest()
+                .concatMap(new Function<RefCountedCursor, Publisher<Cursor>>() {
+
+                    @Override
+                    public Publisher<Cursor> apply(final RefCountedCursor cursor) {
+                        return Flowable.generate(
+                                new HandleAcquirer(cursor), HANDLE_GENERATOR, HANDLE_DISPOSER);
+                    }
+                });
+
+        if (mOptions.managedCursorsScheduler != null) {
+            return handles.lift(new ManagedCursorOperator(
+                    BackpressureStrategy.LATEST, mOptions.managedCursorsScheduler));
+        }
+        return handles;
+    }
+
+    /**
+     * @return the number of loaders that currently have subscribers
+     */
+    public int getActiveLoaderCount() {
+        synchronized (mLoaders) {
+            return mLoaders.size();
+        }
+    }
+
+    /**
+     * Returns the {@link Loader} for this {@link RxCursorLoader.Query}, creating one if needed,
+     * and counts a subscriber to it. Every call must be paired with {@link LoaderReference}.
+     */
+    @NonNull
+    private Loader acquireLoader(@NonNull final RxCursorLoader.Query query) {
+        synchronized (mLoaders) {
+            Loader loader = mLoaders.get(query);
+            if (loader == null) {
+                loader = new Loader(createLoader(query));
+                mLoaders.put(query, loader);
+            }
+            loader.subscribers++;
+            return loader;
+        }
+    }
+
+    @NonNull
+    private Flowable<RefCountedCursor> createLoader(@NonNull final RxCursorLoader.Query query) {
+        final Flowable<Cursor> source = RxCursorLoaderFlowableFactory.createUnmanaged(
+                mContentResolver, query, mScheduler, BackpressureStrategy.BUFFER, mOptions);
+
+        return Flowable
+                .defer(new Callable<Publisher<RefCountedCursor>>() {
+
+                    @Override
+                    public Publisher<RefCountedCursor> call() {
+                        final LatestCursorHolder holder = new LatestCursorHolder();
+                        return source
+                                .map(holder)
+                                .doFinally(holder);
+                    }
+                })
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * A shared loader and the number of its subscribers, guarded by the registry lock.
+     */
+    private static final class Loader {
+
+        @NonNull
+        final Flowable<RefCountedCursor> flowable;
+
+        int subscribers;
+
+        Loader(@NonNull final Flowable<RefCountedCursor> flowable) {
+            this.flowable = flowable;
+        }
+    }
+
+    /**
+     * Uncounts a subscriber and removes the loader from the registry when the last one is gone.
+     * <p>
+     * Counting here, under the same lock that hands out loaders, rather than relying on the
+     * upstream termination of the loader, guarantees that a subscriber that arrives while the
+     * previous connection is being torn down is never served by a removed loader.
+     */
+    private final class LoaderReference implements Action {
+
+        @NonNull
+        private final RxCursorLoader.Query mQuery;
+
+        @NonNull
+        private final Loader mLoader;
+
+        LoaderReference(
+                @NonNull final RxCursorLoader.Query query,
+                @NonNull final Loader loader) {
+            mQuery = query;
+            mLoader = loader;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mLoaders) {
+                if (--mLoader.subscribers == 0 && mLoaders.get(mQuery) == mLoader) {
+                    mLoaders.remove(mQuery);
+                }
+            }
+        }
+    }
+
+    /**
+     * Acquires a handle on subscription. Emitted with {@link #HANDLE_GENERATOR} and closed by
+     * {@link #HANDLE_DISPOSER} if cancelled before delivery.
+     */
+    private static final class HandleAcquirer implements Callable<Cursor> {
+
+        @NonNull
+        private final RefCountedCursor mCursor;
+
+        HandleAcquirer(@NonNull final RefCountedCursor cursor) {
+            mCursor = cursor;
+        }
+
+        @Override
+        public Cursor call() {
+            return mCursor.acquire();
+        }
+    }
+
+    /**
+     * Emits the handle, if acquired, and completes. Returns null state once delivered so the
+     * delivered handle is not closed.
+     */
+    private static final BiFunction<Cursor, Emitter<Cursor>, Cursor> HANDLE_GENERATOR
+            = new BiFunction<Cursor, Emitter<Cursor>, Cursor>() {
+
+        @Override
+        public Cursor apply(final Cursor handle, final Emitter<Cursor> emitter) {
+            if (handle != null) {
+                emitter.onNext(handle);
+            }
+            emitter.onComplete();
+            return null;
+        }
+    };
+
+    private static final Consumer<Cursor> HANDLE_DISPOSER = new Consumer<Cursor>() {
+
+        @Override
+        public void accept(final Cursor handle) {
+            if (handle != null) {
+                handle.close();
+            }
+        }
+    };
+
+    /**
+     * Holds the owner reference of the latest loaded {@link Cursor} and releases it once
+     * superseded or when the loader is released.
+     */
+    private static final class LatestCursorHolder
+            implements Function<Cursor, RefCountedCursor>, Action {
+
+        @Nullable
+        private RefCountedCursor mLatest;
+
+        @Override
+        public RefCountedCursor apply(final Cursor cursor) {
+            final RefCountedCursor refCounted = new RefCountedCursor(cursor);
+            final RefCountedCursor previous;
+            synchronized (this) {
+                previous = mLatest;
+                mLatest = refCounted;
+            }
+            if (previous != null) {
+                previous.release();
+            }
+            return refCounted;
+        }
+
+        @Override
+        public void run() {
+            final RefCountedCursor latest;
+            synchronized (this) {
+                latest = mLatest;
+                mLatest = null;
+            }
+            if (latest != null) {
+                latest.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+
+import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
+import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
+
+/**
+ * Runs a {@link RxCursorLoader.Query} once on subscription, after
+ * {@link SingleObserver#onSubscribe(Disposable)}, so that disposing cancels the query in progress
+ * with a CancellationSignal where supported.
+ * <p>
+ * The loaded {@link Cursor} is either delivered or closed: if disposed before delivery, it is
+ * closed. Errors that happen after dispose are dropped, since the query fails when cancelled.
+ */
+final class CursorQuerySingle extends Single<Cursor> {
+
+    @NonNull
+    private final ContentResolver mContentResolver;
+
+    @NonNull
+    private final RxCursorLoader.Query mQuery;
+
+    CursorQuerySingle(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query) {
+        mContentResolver = resolver;
+        mQuery = query;
+    }
+
+    @Override
+    protected void subscribeActual(final SingleObserver<? super Cursor> observer) {
+        final QueryDisposable disposable = new QueryDisposable();
+        observer.onSubscribe(disposable);
+        if (disposable.isDisposed()) {
+            return;
+        }
+
+        if (isDebugLoggingEnabled()) {
+            Log.d(TAG, mQuery.toString());
+        }
+
+        final Cursor c;
+        try {
+            c = ContentResolverCompat.query(
+                    mContentResolver, mQuery, disposable.mCancellationSignal);
+        } catch (RuntimeException e) {
+            if (disposable.finish()) {
+                observer.onError(e);
+            }
+            return;
+        }
+
+        if (!disposable.finish()) {
+            // Disposed while querying, nobody is going to receive it
+            if (c != null) {
+                c.close();
+            }
+        } else if (c == null) {
+            observer.onError(new QueryReturnedNullException());
+        } else {
+            observer.onSuccess(c);
+        }
+    }
+
+    private static final class QueryDisposable implements Disposable {
+
+        private static final int RUNNING = 0;
+        private static final int FINISHED = 1;
+        private static final int DISPOSED = 2;
+
+        private final AtomicInteger mState = new AtomicInteger();
+
+        final Object mCancellationSignal = ContentResolverCompat.newCancellationSignal();
+
+        /**
+         * @return true if the result must be delivered, false if disposed
+         */
+        boolean finish() {
+            return mState.compareAndSet(RUNNING, FINISHED);
+        }
+
+        @Override
+        public void dispose() {
+            if (mState.getAndSet(DISPOSED) == RUNNING) {
+                ContentResolverCompat.cancel(mCancellationSignal);
+            }
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return mState.get() == DISPOSED;
+        }
+    }
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.annotation.TargetApi;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.database.CursorIndexOutOfBoundsException;
+import android.database.sqlite.SQLiteException;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Detached, immutable copy of {@link Cursor} contents that does not hold any resources, and
+ * can produce any number of independent cursors.
+ * <p>
+ * Values are stored by column. Each column has a type per row and a long per row, which holds
+ * an integer, the raw bits of a double, or an index into a pool of strings and blobs shared by
+ * all columns. Equal strings are stored once.
+ */
+final class CursorSnapshot {
+
+    // Same values as the Cursor FIELD_TYPE constants, which require API 11
+    static final int TYPE_NULL = 0;
+    static final int TYPE_INTEGER = 1;
+    static final int TYPE_FLOAT = 2;
+    static final int TYPE_STRING = 3;
+    static final int TYPE_BLOB = 4;
+
+    private static final int CELL_BYTES = 9;
+    private static final int VALUE_OVERHEAD_BYTES = 16;
+
+    @NonNull
+    private final String[] mColumnNames;
+
+    private final int mRowCount;
+
+    /**
+     * Types by column and row, one of the TYPE constants.
+     */
+    @NonNull
+    private final byte[][] mTypes;
+
+    /**
+     * Values by column and row.
+     */
+    @NonNull
+    private final long[][] mValues;
+
+    /**
+     * Strings and blobs referenced by {@link #mValues}.
+     */
+    @NonNull
+    private final Object[] mPool;
+
+    private final long mSizeBytes;
+
+    private CursorSnapshot(
+            @NonNull final String[] columnNames,
+            final int rowCount,
+            @NonNull final byte[][] types,
+            @NonNull final long[][] values,
+            @NonNull final Object[] pool,
+            final long sizeBytes) {
+        mColumnNames = columnNames;
+        mRowCount = rowCount;
+        mTypes = types;
+        mValues = values;
+        mPool = pool;
+        mSizeBytes = sizeBytes;
+    }
+
+    /**
+     * Copies all rows and moves the {@link Cursor} before the first row.
+     *
+     * @param c the {@link Cursor} to copy
+     * @return new {@link CursorSnapshot}
+     */
+    @NonNull
+    static CursorSnapshot copyOf(@NonNull final Cursor c) {
+        final String[] columnNames = c.getColumnNames();
+        final int columnCount = columnNames.length;
+        final int capacity = c.getCount();
+        final Builder builder = new Builder(columnNames, capacity);
+
+        int row = 0;
+        c.moveToPosition(-1);
+        while (row < capacity && c.moveToNext()) {
+            for (int column = 0; column < columnCount; column++) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                    putTypedValue(builder, c, row, column);
+                } else {
+                    final String value = c.getString(column);
+                    if (value == null) {
+                        builder.putNull(row, column);
+                    } else {
+                        builder.putString(row, column, value);
+                    }
+                }
+            }
+            row++;
+        }
+        c.moveToPosition(-1);
+        return builder.build(row);
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void putTypedValue(
+            @NonNull final Builder builder,
+            @NonNull final Cursor c,
+            final int row,
+            final int column) {
+        switch (c.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                builder.putNull(row, column);
+                break;
+
+            case Cursor.FIELD_TYPE_INTEGER:
+                builder.putLong(row, column, c.getLong(column));
+                break;
+
+            case Cursor.FIELD_TYPE_FLOAT:
+                builder.putDouble(row, column, c.getDouble(column));
+                break;
+
+            case Cursor.FIELD_TYPE_BLOB:
+                builder.putBlob(row, column, c.getBlob(column));
+                break;
+
+            default:
+                builder.putString(row, column, c.getString(column));
+                break;
+        }
+    }
+
+    /**
+     * @return new read-only {@link Cursor} over the copied rows, which must be closed by the
+     * caller
+     */
+    @NonNull
+    Cursor newCursor() {
+        return new SnapshotCursor(this);
+    }
+
+    @NonNull
+    String[] getColumnNames() {
+        return mColumnNames;
+    }
+
+    int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @return one of the TYPE constants
+     */
+    int getType(final int row, final int column) {
+        return mTypes[column][row];
+    }
+
+    /**
+     * Must be called only if the type is {@link #TYPE_INTEGER}.
+     */
+    long getLong(final int row, final int column) {
+        return mValues[column][row];
+    }
+
+    /**
+     * Must be called only if the type is {@link #TYPE_FLOAT}.
+     */
+    double getDouble(final int row, final int column) {
+        return Double.longBitsToDouble(mValues[column][row]);
+    }
+
+    /**
+     * Must be called only if the type is {@link #TYPE_STRING}.
+     */
+    @NonNull
+    String getString(final int row, final int column) {
+        return (String) mPool[(int) mValues[column][row]];
+    }
+
+    /**
+     * Must be called only if the type is {@link #TYPE_BLOB}. The returned array
+     * must not be modified.
+     */
+    @NonNull
+    byte[] getBlob(final int row, final int column) {
+        return (byte[]) mPool[(int) mValues[column][row]];
+    }
+
+    /**
+     * @return the estimated size of the values in bytes
+     */
+    long getSizeBytes() {
+        return mSizeBytes;
+    }
+
+    /**
+     * Builds a {@link CursorSnapshot} by setting every value of a fixed number of rows.
+     */
+    static final class Builder {
+
+        @NonNull
+        private final String[] mColumnNames;
+
+        @NonNull
+        private final byte[][] mTypes;
+
+        @NonNull
+        private final long[][] mValues;
+
+        private final List<Object> mPool = new ArrayList<>();
+        private final Map<String, Integer> mStringIndices = new HashMap<>();
+
+        private long mPoolSizeBytes;
+
+        /**
+         * @param columnNames the column names
+         * @param rowCount    the maximum number of rows
+         */
+        Builder(@NonNull final String[] columnNames, final int rowCount) {
+            mColumnNames = columnNames;
+            mTypes = new byte[columnNames.length][rowCount];
+            mValues = new long[columnNames.length][rowCount];
+        }
+
+        void putNull(final int row, final int column) {
+            mTypes[column][row] = (byte) TYPE_NULL;
+        }
+
+        void putLong(final int row, final int column, final long value) {
+            mTypes[column][row] = (byte) TYPE_INTEGER;
+            mValues[column][row] = value;
+        }
+
+        void putDouble(final int row, final int column, final double value) {
+            mTypes[column][row] = (byte) TYPE_FLOAT;
+            mValues[column][row] = Double.doubleToRawLongBits(value);
+        }
+
+        void putString(final int row, final int column, @NonNull final String value) {
+            Integer index = mStringIndices.get(value);
+            if (index == null) {
+                index = mPool.size();
+                mPool.add(value);
+                mStringIndices.put(value, index);
+                mPoolSizeBytes += VALUE_OVERHEAD_BYTES + 2L * value.length();
+            }
+            mTypes[column][row] = (byte) TYPE_STRING;
+            mValues[column][row] = index;
+        }
+
+        void putBlob(final int row, final int column, @NonNull final byte[] value) {
+            mTypes[column][row] = (byte) TYPE_BLOB;
+            mValues[column][row] = mPool.size();
+            mPool.add(value);
+            mPoolSizeBytes += VALUE_OVERHEAD_BYTES + value.length;
+        }
+
+        /**
+         * @param rowCount the number of rows set, trailing rows are dropped
+         * @return new {@link CursorSnapshot}
+         */
+        @NonNull
+        CursorSnapshot build(final int rowCount) {
+            final int columnCount = mColumnNames.length;
+            final byte[][] types;
+            final long[][] values;
+            if (columnCount != 0 && mTypes[0].length != rowCount) {
+                types = new byte[columnCount][];
+                values = new long[columnCount][];
+                for (int column = 0; column < columnCount; column++) {
+                    types[column] = trim(mTypes[column], rowCount);
+                    values[column] = trim(mValues[column], rowCount);
+                }
+            } else {
+                types = mTypes;
+                values = mValues;
+            }
+            return new CursorSnapshot(
+                    mColumnNames,
+                    rowCount,
+                    types,
+                    values,
+                    mPool.toArray(),
+                    (long) CELL_BYTES * columnCount * rowCount + mPoolSizeBytes);
+        }
+
+        @NonNull
+        private static byte[] trim(@NonNull final byte[] source, final int length) {
+            final byte[] result = new byte[length];
+            System.arraycopy(source, 0, result, 0, length);
+            return result;
+        }
+
+        @NonNull
+        private static long[] trim(@NonNull final long[] source, final int length) {
+            final long[] result = new long[length];
+            System.arraycopy(source, 0, result, 0, length);
+            return result;
+        }
+    }
+
+    /**
+     * Read-only {@link Cursor} over a {@link CursorSnapshot}. Conversions between types follow
+     * {@link android.database.CursorWindow}: NULL reads as zero or null, and strings are parsed
+     * as numbers, falling back to zero.
+     */
+    static final class SnapshotCursor extends AbstractCursor {
+
+        @NonNull
+        private final CursorSnapshot mSnapshot;
+
+        SnapshotCursor(@NonNull final CursorSnapshot snapshot) {
+            mSnapshot = snapshot;
+        }
+
+        @Override
+        public int getCount() {
+            return mSnapshot.mRowCount;
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return mSnapshot.mColumnNames;
+        }
+
+        @Override
+        public int getType(final int column) {
+            return mSnapshot.getType(currentRow(), column);
+        }
+
+        @Override
+        public boolean isNull(final int column) {
+            return getType(column) == TYPE_NULL;
+        }
+
+        @Override
+        public String getString(final int column) {
+            final int row = currentRow();
+            switch (mSnapshot.getType(row, column)) {
+                case TYPE_NULL:
+                    return null;
+
+                case TYPE_INTEGER:
+                    return Long.toString(mSnapshot.getLong(row, column));
+
+                case TYPE_FLOAT:
+                    return Double.toString(mSnapshot.getDouble(row, column));
+
+                case TYPE_STRING:
+                    return mSnapshot.getString(row, column);
+
+                default:
+                    throw new SQLiteException(
+                            "Unable to convert BLOB to string");
+            }
+        }
+
+        @Override
+        public byte[] getBlob(final int column) {
+            final int row = currentRow();
+            switch (mSnapshot.getType(row, column)) {
+                case TYPE_NULL:
+                    return null;
+
+                case TYPE_BLOB:
+                    return mSnapshot.getBlob(row, column).clone();
+
+                case TYPE_STRING:
+                    return mSnapshot.getString(row, column).getBytes();
+
+                default:
+                    throw new SQLiteException(
+                            "Unable to convert number to blob");
+            }
+        }
+
+        @Override
+        public long getLong(final int column) {
+            final int row = currentRow();
+            switch (mSnapshot.getType(row, column)) {
+                case TYPE_INTEGER:
+                    return mSnapshot.getLong(row, column);
+
+                case TYPE_FLOAT:
+                    return (long) mSnapshot.getDouble(row, column);
+
+                case TYPE_STRING:
+                    return parseLong(mSnapshot.getString(row, column));
+
+                case TYPE_NULL:
+                    return 0;
+
+                default:
+                    throw new SQLiteException(
+                            "Unable to convert BLOB to long");
+            }
+        }
+
+        @Override
+        public double getDouble(final int column) {
+            final int row = currentRow();
+            switch (mSnapshot.getType(row, column)) {
+                case TYPE_INTEGER:
+                    return mSnapshot.getLong(row, column);
+
+                case TYPE_FLOAT:
+                    return mSnapshot.getDouble(row, column);
+
+                case TYPE_STRING:
+                    return parseDouble(mSnapshot.getString(row, column));
+
+                case TYPE_NULL:
+                    return 0;
+
+                default:
+                    throw new SQLiteException(
+                            "Unable to convert BLOB to double");
+            }
+        }
+
+        @Override
+        public int getInt(final int column) {
+            return (int) getLong(column);
+        }
+
+        @Override
+        public short getShort(final int column) {
+            return (short) getLong(column);
+        }
+
+        @Override
+        public float getFloat(final int column) {
+            return (float) getDouble(column);
+        }
+
+        private int currentRow() {
+            final int position = getPosition();
+            if (position < 0 || position >= mSnapshot.mRowCount) {
+                throw new CursorIndexOutOfBoundsException(
+                        position, mSnapshot.mRowCount);
+            }
+            return position;
+        }
+
+        private static long parseLong(@NonNull final String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return (long) parseDouble(value);
+            }
+        }
+
+        private static double parseDouble(@NonNull final String value) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import androidx.annotation.NonNull;
+import io.reactivex.FlowableOperator;
+import io.reactivex.FlowableSubscriber;
+
+/**
+ * Tracks the outstanding demand of the downstream, that is, the number of requested items that
+ * were not delivered yet, and runs a callback after every request.
+ * <p>
+ * Must be applied last, so that the demand is the one of the consumer. The callback runs after
+ * the request was passed upstream, so that anything emitted by the callback can be delivered.
+ */
+final class DemandTrackingOperator<T> implements FlowableOperator<T, T> {
+
+    @NonNull
+    private final AtomicLong mRequested;
+
+    @NonNull
+    private final Runnable mOnRequest;
+
+    /**
+     * @param requested receives the outstanding demand
+     * @param onRequest runs after every request
+     */
+    DemandTrackingOperator(
+            @NonNull final AtomicLong requested,
+            @NonNull final Runnable onRequest) {
+        mRequested = requested;
+        mOnRequest = onRequest;
+    }
+
+    @Override
+    public Subscriber<? super T> apply(final Subscriber<? super T> downstream) {
+        return new DemandTrackingSubscriber<>(downstream, mRequested, mOnRequest);
+    }
+
+    private static final class DemandTrackingSubscriber<T>
+            implements FlowableSubscriber<T>, Subscription {
+
+        @NonNull
+        private final Subscriber<? super T> mDownstream;
+
+        @NonNull
+        private final AtomicLong mRequested;
+
+        @NonNull
+        private final Runnable mOnRequest;
+
+        private Subscription mUpstream;
+
+        DemandTrackingSubscriber(
+                @NonNull final Subscriber<? super T> downstream,
+                @NonNull final AtomicLong requested,
+                @NonNull final Runnable onRequest) {
+            mDownstream = downstream;
+            mRequested = requested;
+            mOnRequest = onRequest;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull final Subscription s) {
+            mUpstream = s;
+            mDownstream.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(final T t) {
+            for (; ; ) {
+                final long r = mRequested.get();
+                if (r == 0 || r == Long.MAX_VALUE || mRequested.compareAndSet(r, r - 1)) {
+                    break;
+                }
+            }
+            mDownstream.onNext(t);
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            mDownstream.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            mDownstream.onComplete();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                return;
+            }
+            for (; ; ) {
+                final long r = mRequested.get();
+                final long u = r + n < 0 ? Long.MAX_VALUE : r + n;
+                if (r == Long.MAX_VALUE || mRequested.compareAndSet(r, u)) {
+                    break;
+                }
+            }
+            mUpstream.request(n);
+            mOnRequest.run();
+        }
+
+        @Override
+        public void cancel() {
+            mUpstream.cancel();
+        }
+    }
+}
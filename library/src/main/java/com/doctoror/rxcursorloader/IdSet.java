@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable set of row ids of a loaded {@link Cursor}.
+ *
+ * @see RxCursorLoader.Options.Builder#setIdColumn(String)
+ */
+public final class IdSet {
+
+    @NonNull
+    private final LongIntHashMap mIds;
+
+    private IdSet(@NonNull final LongIntHashMap ids) {
+        mIds = ids;
+    }
+
+    /**
+     * Reads ids of all rows and moves the {@link Cursor} before the first row.
+     *
+     * @param c             the {@link Cursor} to read
+     * @param idColumnIndex the index of the id column
+     * @return new {@link IdSet}
+     */
+    @NonNull
+    static IdSet read(@NonNull final Cursor c, final int idColumnIndex) {
+        final LongIntHashMap ids = new LongIntHashMap(c.getCount());
+        c.moveToPosition(-1);
+        while (c.moveToNext()) {
+            ids.put(c.getLong(idColumnIndex), 0);
+        }
+        c.moveToPosition(-1);
+        return new IdSet(ids);
+    }
+
+    /**
+     * @param id the id to look for
+     * @return true if a row with this id was loaded
+     */
+    public boolean contains(final long id) {
+        return mIds.get(id) != -1;
+    }
+
+    /**
+     * @return the number of distinct ids
+     */
+    public int size() {
+        return mIds.size();
+    }
+}
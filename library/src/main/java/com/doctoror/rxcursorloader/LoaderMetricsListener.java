@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Receives {@link ReloadMetrics} of loaders, for instance to forward them to an APM.
+ * <p>
+ * Called on the loading {@link io.reactivex.Scheduler} after every reload, so implementations
+ * must be fast and must not block.
+ *
+ * @see RxCursorLoader.Options.Builder#setMetricsListener(LoaderMetricsListener)
+ */
+public interface LoaderMetricsListener {
+
+    /**
+     * @param metrics the {@link ReloadMetrics} of the finished reload
+     */
+    void onReload(@NonNull ReloadMetrics metrics);
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of loaders created with the same {@link RxCursorLoader.Options}.
+ * <p>
+ * All values are cumulative and safe to read from any thread.
+ */
+public final class LoaderStats {
+
+    private final AtomicLong mNotificationCount = new AtomicLong();
+    private final AtomicLong mCoalescedNotificationCount = new AtomicLong();
+    private final AtomicLong mWindowFillCount = new AtomicLong();
+    private final AtomicLong mWindowFillTimeNanos = new AtomicLong();
+    private final AtomicLong mReloadCount = new AtomicLong();
+    private final AtomicLong mSkippedReloadCount = new AtomicLong();
+    private final AtomicLong mUnchangedResultCount = new AtomicLong();
+    private final AtomicLong mCacheHitCount = new AtomicLong();
+    private final AtomicLong mSnapshotHitCount = new AtomicLong();
+
+    LoaderStats() {
+
+    }
+
+    /**
+     * @return the number of content change notifications received
+     */
+    public long getNotificationCount() {
+        return mNotificationCount.get();
+    }
+
+    /**
+     * @return the number of content change notifications that were merged into an already
+     * pending reload, and thus did not cause a reload of their own
+     */
+    public long getCoalescedNotificationCount() {
+        return mCoalescedNotificationCount.get();
+    }
+
+    /**
+     * @return the number of cursors which windows were filled before emitting
+     * @see RxCursorLoader.Options.Builder#setWindowPrefill(boolean)
+     */
+    public long getWindowFillCount() {
+        return mWindowFillCount.get();
+    }
+
+    /**
+     * @return the total time spent filling cursor windows before emitting, in nanoseconds
+     * @see RxCursorLoader.Options.Builder#setWindowPrefill(boolean)
+     */
+    public long getWindowFillTimeNanos() {
+        return mWindowFillTimeNanos.get();
+    }
+
+    /**
+     * @return the number of queries run, including the initial ones
+     */
+    public long getReloadCount() {
+        return mReloadCount.get();
+    }
+
+    /**
+     * @return the number of content change notifications for which the reload was skipped
+     * because the {@link ChangeFilter} found them not relevant
+     * @see RxCursorLoader.Options.Builder#setChangeFilter(ChangeFilter)
+     */
+    public long getSkippedReloadCount() {
+        return mSkippedReloadCount.get();
+    }
+
+    /**
+     * @return the number of reloaded cursors that were not emitted because their contents
+     * matched the last emitted {@link android.database.Cursor}
+     * @see RxCursorLoader.Options.Builder#setSkipUnchanged(boolean)
+     */
+    public long getUnchangedResultCount() {
+        return mUnchangedResultCount.get();
+    }
+
+    /**
+     * @return the number of subscriptions that received a cached result before loading
+     * @see RxCursorLoader.Options.Builder#setResultCache(ResultCache)
+     */
+    public long getCacheHitCount() {
+        return mCacheHitCount.get();
+    }
+
+    /**
+     * @return the number of subscriptions that received a stored result before loading
+     * @see RxCursorLoader.Options.Builder#setSnapshotStore(SnapshotStore)
+     */
+    public long getSnapshotHitCount() {
+        return mSnapshotHitCount.get();
+    }
+
+    void onNotification() {
+        mNotificationCount.incrementAndGet();
+    }
+
+    void onNotificationsCoalesced(final int count) {
+        mCoalescedNotificationCount.addAndGet(count);
+    }
+
+    void onWindowFilled(final long fillTimeNanos) {
+        mWindowFillCount.incrementAndGet();
+        mWindowFillTimeNanos.addAndGet(fillTimeNanos);
+    }
+
+    void onReload() {
+        mReloadCount.incrementAndGet();
+    }
+
+    void onReloadSkipped() {
+        mSkippedReloadCount.incrementAndGet();
+    }
+
+    void onUnchangedResult() {
+        mUnchangedResultCount.incrementAndGet();
+    }
+
+    void onCacheHit() {
+        mCacheHitCount.incrementAndGet();
+    }
+
+    void onSnapshotHit() {
+        mSnapshotHitCount.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "LoaderStats{" +
+                "notificationCount=" + mNotificationCount +
+                ", coalescedNotificationCount=" + mCoalescedNotificationCount +
+                ", windowFillCount=" + mWindowFillCount +
+                ", windowFillTimeNanos=" + mWindowFillTimeNanos +
+                ", reloadCount=" + mReloadCount +
+                ", skippedReloadCount=" + mSkippedReloadCount +
+                ", unchangedResultCount=" + mUnchangedResultCount +
+                ", cacheHitCount=" + mCacheHitCount +
+                ", snapshotHitCount=" + mSnapshotHitCount +
+                '}';
+    }
+}
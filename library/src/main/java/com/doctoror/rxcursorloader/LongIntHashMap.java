@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of long keys to non-negative int values, without boxing.
+ */
+final class LongIntHashMap {
+
+    private static final int FREE = -1;
+
+    private long[] mKeys;
+    private int[] mValues;
+    private int mMask;
+    private int mSize;
+
+    LongIntHashMap(final int expectedSize) {
+        int capacity = 4;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the value, or -1 if there is no mapping for the key
+     */
+    int get(final long key) {
+        int i = index(key);
+        for (; ; ) {
+            final int value = mValues[i];
+            if (value == FREE) {
+                return -1;
+            }
+            if (mKeys[i] == key) {
+                return value;
+            }
+            i = (i + 1) & mMask;
+        }
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value, must not be negative
+     * @return the previous value, or -1 if there was no mapping for the key
+     */
+    int put(final long key, final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value must not be negative");
+        }
+        int i = index(key);
+        for (; ; ) {
+            final int existing = mValues[i];
+            if (existing == FREE) {
+                mKeys[i] = key;
+                mValues[i] = value;
+                if (++mSize * 2 > mValues.length) {
+                    rehash(mValues.length << 1);
+                }
+                return -1;
+            }
+            if (mKeys[i] == key) {
+                mValues[i] = value;
+                return existing;
+            }
+            i = (i + 1) & mMask;
+        }
+    }
+
+    private int index(final long key) {
+        // Spread the bits, ids are often sequential
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mMask;
+    }
+
+    private void allocate(final int capacity) {
+        mKeys = new long[capacity];
+        mValues = new int[capacity];
+        Arrays.fill(mValues, FREE);
+        mMask = capacity - 1;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] keys = mKeys;
+        final int[] values = mValues;
+        allocate(capacity);
+        mSize = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != FREE) {
+                put(keys[i], values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.FlowableOperator;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.Scheduler;
+import io.reactivex.exceptions.MissingBackpressureException;
+
+/**
+ * Applies {@link BackpressureStrategy} to a {@link Cursor} stream and closes every
+ * {@link Cursor} that is no longer used:
+ * <ul>
+ * <li>the previously delivered one, once the next one is delivered;</li>
+ * <li>the ones dropped because of backpressure;</li>
+ * <li>the last delivered and all queued ones when the stream is cancelled or terminated.</li>
+ * </ul>
+ * The upstream must not apply backpressure itself, i.e. must be created with
+ * {@link BackpressureStrategy#MISSING}.
+ * <p>
+ * Delivered cursors are closed on the close {@link Scheduler}, which is expected to be the one
+ * the consumer observes on, so that a consumer switches to the next {@link Cursor} before the
+ * previous one is closed. Cursors that were never delivered are closed immediately.
+ */
+final class ManagedCursorOperator implements FlowableOperator<Cursor, Cursor> {
+
+    @NonNull
+    private final BackpressureStrategy mBackpressureStrategy;
+
+    @NonNull
+    private final Scheduler mCloseScheduler;
+
+    ManagedCursorOperator(
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final Scheduler closeScheduler) {
+        mBackpressureStrategy = backpressureStrategy;
+        mCloseScheduler = closeScheduler;
+    }
+
+    @Override
+    public Subscriber<? super Cursor> apply(final Subscriber<? super Cursor> downstream) {
+        return new ManagedCursorSubscriber(downstream, mBackpressureStrategy, mCloseScheduler);
+    }
+
+    static void closeQuietly(@Nullable final Cursor cursor) {
+        if (cursor != null && !cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+
+    private static final class ManagedCursorSubscriber
+            implements FlowableSubscriber<Cursor>, Subscription {
+
+        private final ArrayDeque<Cursor> mQueue = new ArrayDeque<>();
+
+        @NonNull
+        private final Subscriber<? super Cursor> mDownstream;
+
+        @NonNull
+        private final BackpressureStrategy mBackpressureStrategy;
+
+        @NonNull
+        private final Scheduler mCloseScheduler;
+
+        private Subscription mUpstream;
+
+        private Cursor mLastDelivered;
+        private long mRequested;
+        private boolean mEmitting;
+        private boolean mMissed;
+        private boolean mDone;
+        private boolean mCancelled;
+        private Throwable mError;
+
+        ManagedCursorSubscriber(
+                @NonNull final Subscriber<? super Cursor> downstream,
+                @NonNull final BackpressureStrategy backpressureStrategy,
+                @NonNull final Scheduler closeScheduler) {
+            mDownstream = downstream;
+            mBackpressureStrategy = backpressureStrategy;
+            mCloseScheduler = closeScheduler;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull final Subscription s) {
+            mUpstream = s;
+            mDownstream.onSubscribe(this);
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(final Cursor cursor) {
+            final List<Cursor> dropped = new ArrayList<>(1);
+            boolean overflow = false;
+            synchronized (this) {
+                if (mCancelled || mDone) {
+                    dropped.add(cursor);
+                } else if (mBackpressureStrategy == BackpressureStrategy.MISSING
+                        || mBackpressureStrategy == BackpressureStrategy.BUFFER
+                        || mQueue.size() < mRequested) {
+                    mQueue.offer(cursor);
+                } else {
+                    switch (mBackpressureStrategy) {
+                        case DROP:
+                            dropped.add(cursor);
+                            break;
+
+                        case LATEST:
+                            if (!mQueue.isEmpty()) {
+                                dropped.add(mQueue.pollLast());
+                            }
+                            mQueue.offer(cursor);
+                            break;
+
+                        default:
+                            dropped.add(cursor);
+                            dropped.addAll(mQueue);
+                            mQueue.clear();
+                            mError = new MissingBackpressureException(
+                                    "Could not emit value due to lack of requests");
+                            mDone = true;
+                            overflow = true;
+                            break;
+                    }
+                }
+            }
+
+            for (final Cursor c : dropped) {
+                closeQuietly(c);
+            }
+            if (overflow) {
+                mUpstream.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mError = t;
+                mDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                return;
+            }
+            synchronized (this) {
+                final long r = mRequested + n;
+                mRequested = r < 0 ? Long.MAX_VALUE : r;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final List<Cursor> queued;
+            final Cursor lastDelivered;
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                queued = new ArrayList<>(mQueue);
+                mQueue.clear();
+                lastDelivered = mLastDelivered;
+                mLastDelivered = null;
+            }
+
+            mUpstream.cancel();
+            for (final Cursor c : queued) {
+                closeQuietly(c);
+            }
+            closeDelivered(lastDelivered);
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (mEmitting) {
+                    mMissed = true;
+                    return;
+                }
+                mEmitting = true;
+            }
+
+            for (; ; ) {
+                Cursor next = null;
+                boolean terminate = false;
+                Throwable error = null;
+                Cursor lastDelivered = null;
+                synchronized (this) {
+                    if (mCancelled) {
+                        mEmitting = false;
+                        return;
+                    }
+                    if (!mQueue.isEmpty() && (mRequested != 0
+                            || mBackpressureStrategy == BackpressureStrategy.MISSING)) {
+                        next = mQueue.poll();
+                        if (mRequested != 0 && mRequested != Long.MAX_VALUE) {
+                            mRequested--;
+                        }
+                    } else if (mDone && mQueue.isEmpty()) {
+                        terminate = true;
+                        error = mError;
+                        lastDelivered = mLastDelivered;
+                        mLastDelivered = null;
+                        mCancelled = true;
+                        mEmitting = false;
+                    } else if (mMissed) {
+                        mMissed = false;
+                        continue;
+                    } else {
+                        mEmitting = false;
+                        return;
+                    }
+                }
+
+                if (terminate) {
+                    if (error != null) {
+                        mDownstream.onError(error);
+                    } else {
+                        mDownstream.onComplete();
+                    }
+                    closeDelivered(lastDelivered);
+                    return;
+                }
+
+                mDownstream.onNext(next);
+
+                final Cursor previous;
+                boolean cancelled = false;
+                synchronized (this) {
+                    if (mCancelled) {
+                        previous = null;
+                        cancelled = true;
+                    } else {
+                        previous = mLastDelivered;
+                        mLastDelivered = next;
+                    }
+                }
+                closeDelivered(cancelled ? next : previous);
+            }
+        }
+
+        private void closeDelivered(@Nullable final Cursor cursor) {
+            if (cursor != null) {
+                mCloseScheduler.scheduleDirect(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        closeQuietly(cursor);
+                    }
+                });
+            }
+        }
+    }
+}
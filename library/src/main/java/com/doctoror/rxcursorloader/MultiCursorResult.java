@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Consistent result of all queries of
+ * {@link RxCursorLoader#multi(android.content.ContentResolver, java.util.List,
+ * io.reactivex.Scheduler, io.reactivex.BackpressureStrategy, RxCursorLoader.Options)}, one
+ * {@link Cursor} per query in the order of the queries.
+ * <p>
+ * Cursors of queries that were not reloaded are the same instances as in the previous result.
+ */
+public final class MultiCursorResult {
+
+    @NonNull
+    private final Cursor[] mCursors;
+
+    @NonNull
+    private final boolean[] mChanged;
+
+    MultiCursorResult(@NonNull final Cursor[] cursors, @NonNull final boolean[] changed) {
+        mCursors = cursors;
+        mChanged = changed;
+    }
+
+    /**
+     * @return the number of queries
+     */
+    public int size() {
+        return mCursors.length;
+    }
+
+    /**
+     * @param index the index of the query
+     * @return the {@link Cursor} of the query
+     */
+    @NonNull
+    public Cursor get(final int index) {
+        return mCursors[index];
+    }
+
+    /**
+     * @param index the index of the query
+     * @return true if the query was reloaded for this result, so its {@link Cursor} is different
+     * from the one in the previous result, which is no longer used by the loader
+     */
+    public boolean isChanged(final int index) {
+        return mChanged[index];
+    }
+
+    @Override
+    public String toString() {
+        return "MultiCursorResult{" +
+                "cursors=" + Arrays.toString(mCursors) +
+                ", changed=" + Arrays.toString(mChanged) +
+                '}';
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.FlowableOperator;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.exceptions.MissingBackpressureException;
+
+/**
+ * Applies {@link BackpressureStrategy} to a {@link MultiCursorResult} stream without breaking
+ * the contract of {@link MultiCursorResult#isChanged(int)}, which is relative to the previous
+ * delivered result:
+ * <ul>
+ * <li>a result that is not delivered is merged into the next one, which reports as changed
+ * every {@link Cursor} that changed in either;</li>
+ * <li>a changed {@link Cursor} that is superseded before delivery is closed;</li>
+ * <li>changed cursors of results that are not delivered when the stream is cancelled or
+ * terminated are closed.</li>
+ * </ul>
+ * The upstream must not apply backpressure itself, i.e. must be created with
+ * {@link BackpressureStrategy#MISSING}.
+ */
+final class MultiCursorResultOperator
+        implements FlowableOperator<MultiCursorResult, MultiCursorResult> {
+
+    @NonNull
+    private final BackpressureStrategy mBackpressureStrategy;
+
+    MultiCursorResultOperator(@NonNull final BackpressureStrategy backpressureStrategy) {
+        mBackpressureStrategy = backpressureStrategy;
+    }
+
+    @Override
+    public Subscriber<? super MultiCursorResult> apply(
+            final Subscriber<? super MultiCursorResult> downstream) {
+        return new MultiCursorResultSubscriber(downstream, mBackpressureStrategy);
+    }
+
+    /**
+     * @return the result with the cursors of {@code next} that reports as changed what changed
+     * in either of the results
+     */
+    @NonNull
+    static MultiCursorResult merge(
+            @NonNull final MultiCursorResult undelivered,
+            @NonNull final MultiCursorResult next) {
+        final int size = next.size();
+        final Cursor[] cursors = new Cursor[size];
+        final boolean[] changed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            cursors[i] = next.get(i);
+            changed[i] = undelivered.isChanged(i) || next.isChanged(i);
+            if (undelivered.isChanged(i) && next.isChanged(i)) {
+                // Superseded before anyone received it
+                undelivered.get(i).close();
+            }
+        }
+        return new MultiCursorResult(cursors, changed);
+    }
+
+    static void closeChanged(@Nullable final MultiCursorResult result) {
+        if (result != null) {
+            for (int i = 0; i < result.size(); i++) {
+                if (result.isChanged(i)) {
+                    result.get(i).close();
+                }
+            }
+        }
+    }
+
+    private static final class MultiCursorResultSubscriber
+            implements FlowableSubscriber<MultiCursorResult>, Subscription {
+
+        private final ArrayDeque<MultiCursorResult> mQueue = new ArrayDeque<>();
+
+        @NonNull
+        private final Subscriber<? super MultiCursorResult> mDownstream;
+
+        @NonNull
+        private final BackpressureStrategy mBackpressureStrategy;
+
+        private Subscription mUpstream;
+
+        /**
+         * With {@link BackpressureStrategy#DROP}, the result that arrived without demand, to be
+         * merged into the next one.
+         */
+        private MultiCursorResult mDropped;
+
+        private long mRequested;
+        private boolean mEmitting;
+        private boolean mMissed;
+        private boolean mDone;
+        private boolean mCancelled;
+        private Throwable mError;
+
+        MultiCursorResultSubscriber(
+                @NonNull final Subscriber<? super MultiCursorResult> downstream,
+                @NonNull final BackpressureStrategy backpressureStrategy) {
+            mDownstream = downstream;
+            mBackpressureStrategy = backpressureStrategy;
+        }
+
+        @Override
+        public void onSubscribe(@NonNull final Subscription s) {
+            mUpstream = s;
+            mDownstream.onSubscribe(this);
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(final MultiCursorResult result) {
+            final List<MultiCursorResult> undelivered = new ArrayList<>(1);
+            boolean overflow = false;
+            synchronized (this) {
+                MultiCursorResult next = result;
+                if (mDropped != null) {
+                    next = merge(mDropped, next);
+                    mDropped = null;
+                }
+
+                if (mCancelled || mDone) {
+                    undelivered.add(next);
+                } else if (mBackpressureStrategy == BackpressureStrategy.MISSING
+                        || mBackpressureStrategy == BackpressureStrategy.BUFFER
+                        || mQueue.size() < mRequested) {
+                    mQueue.offer(next);
+                } else {
+                    switch (mBackpressureStrategy) {
+                        case DROP:
+                            mDropped = next;
+                            break;
+
+                        case LATEST:
+                            if (!mQueue.isEmpty()) {
+                                next = merge(mQueue.pollLast(), next);
+                            }
+                            mQueue.offer(next);
+                            break;
+
+                        default:
+                            undelivered.addAll(mQueue);
+                            undelivered.add(next);
+                            mQueue.clear();
+                            mError = new MissingBackpressureException(
+                                    "Could not emit value due to lack of requests");
+                            mDone = true;
+                            overflow = true;
+                            break;
+                    }
+                }
+            }
+
+            for (final MultiCursorResult r : undelivered) {
+                closeChanged(r);
+            }
+            if (overflow) {
+                mUpstream.cancel();
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(final Throwable t) {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mError = t;
+                mDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                mDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                return;
+            }
+            synchronized (this) {
+                final long r = mRequested + n;
+                mRequested = r < 0 ? Long.MAX_VALUE : r;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final List<MultiCursorResult> undelivered;
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                undelivered = new ArrayList<>(mQueue);
+                mQueue.clear();
+                if (mDropped != null) {
+                    undelivered.add(mDropped);
+                    mDropped = null;
+                }
+            }
+
+            mUpstream.cancel();
+            for (final MultiCursorResult r : undelivered) {
+                closeChanged(r);
+            }
+        }
+
+        private void drain() {
+            synchronized (this) {
+                if (mEmitting) {
+                    mMissed = true;
+                    return;
+                }
+                mEmitting = true;
+            }
+
+            for (; ; ) {
+                MultiCursorResult next = null;
+                MultiCursorResult dropped = null;
+                boolean terminate = false;
+                Throwable error = null;
+                synchronized (this) {
+                    if (mCancelled) {
+                        mEmitting = false;
+                        return;
+                    }
+                    if (!mQueue.isEmpty() && (mRequested != 0
+                            || mBackpressureStrategy == BackpressureStrategy.MISSING)) {
+                        next = mQueue.poll();
+                        if (mRequested != 0 && mRequested != Long.MAX_VALUE) {
+                            mRequested--;
+                        }
+                    } else if (mDone && mQueue.isEmpty()) {
+                        terminate = true;
+                        error = mError;
+                        dropped = mDropped;
+                        mDropped = null;
+                        mCancelled = true;
+                        mEmitting = false;
+                    } else if (mMissed) {
+                        mMissed = false;
+                        continue;
+                    } else {
+                        mEmitting = false;
+                        return;
+                    }
+                }
+
+                if (terminate) {
+                    closeChanged(dropped);
+                    if (error != null) {
+                        mDownstream.onError(error);
+                    } else {
+                        mDownstream.onComplete();
+                    }
+                    return;
+                }
+
+                mDownstream.onNext(next);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * {@link Handler}s for {@link android.database.ContentObserver} callbacks, shared by all
+ * loaders.
+ */
+final class ObserverHandlers {
+
+    private ObserverHandlers() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param dispatch the {@link RxCursorLoader.Options.ObserverDispatch} to get the
+     *                 {@link Handler} for
+     * @return the {@link Handler}, or null to dispatch on the binder thread
+     */
+    @Nullable
+    static Handler get(@NonNull final RxCursorLoader.Options.ObserverDispatch dispatch) {
+        switch (dispatch) {
+            case MAIN:
+                return MainHolder.HANDLER;
+
+            case BACKGROUND:
+                return BackgroundHolder.HANDLER;
+
+            case BINDER:
+                return null;
+
+            default:
+                throw new IllegalArgumentException("Unexpected dispatch: " + dispatch);
+        }
+    }
+
+    private static final class MainHolder {
+
+        static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    }
+
+    private static final class BackgroundHolder {
+
+        static final Handler HANDLER = newBackgroundHandler();
+
+        @NonNull
+        private static Handler newBackgroundHandler() {
+            final HandlerThread thread = new HandlerThread(
+                    "RxCursorLoader-observer", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            return new Handler(thread.getLooper());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Pauses and resumes live loaders without disposing them.
+ * <p>
+ * While paused, loaders stay subscribed and registered for content changes, but do not reload.
+ * Instead, they remember that the content has changed, and on {@link #resume()} each of them
+ * reloads at most once, and only if something changed while paused.
+ * <p>
+ * Pass to {@link RxCursorLoader.Options.Builder#setPauseController(PauseController)}. A single
+ * {@link PauseController} may control any number of loaders. Safe to use from any thread.
+ */
+public final class PauseController {
+
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean mPaused;
+
+    /**
+     * Creates a resumed {@link PauseController}.
+     */
+    public PauseController() {
+
+    }
+
+    /**
+     * @return whether loaders are paused
+     */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Pauses loaders. Reloads in progress are not interrupted.
+     */
+    public void pause() {
+        mPaused = true;
+    }
+
+    /**
+     * Resumes loaders. Every loader that received a content change while paused reloads once.
+     */
+    public void resume() {
+        mPaused = false;
+        for (final Listener listener : mListeners) {
+            listener.onResumed();
+        }
+    }
+
+    void addListener(@NonNull final Listener listener) {
+        mListeners.add(listener);
+    }
+
+    void removeListener(@NonNull final Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    interface Listener {
+
+        void onResumed();
+    }
+}
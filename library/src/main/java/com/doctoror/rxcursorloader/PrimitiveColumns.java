@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Values of numeric columns of a loaded result, stored in primitive arrays without boxing, and
+ * an optional hash index of one of them.
+ * <p>
+ * Created by {@link RxCursorLoader#primitiveColumns(android.content.ContentResolver,
+ * RxCursorLoader.Query, io.reactivex.Scheduler, Spec, RxCursorLoader.Options)}. NULL values
+ * are read as zero. Returned arrays must not be modified.
+ */
+public final class PrimitiveColumns {
+
+    static final int TYPE_INT = 0;
+    static final int TYPE_LONG = 1;
+    static final int TYPE_DOUBLE = 2;
+
+    @NonNull
+    private final Spec mSpec;
+
+    @NonNull
+    private final Object[] mValues;
+
+    private final int mRowCount;
+
+    @Nullable
+    private final LongIntHashMap mIndex;
+
+    private PrimitiveColumns(
+            @NonNull final Spec spec,
+            @NonNull final Object[] values,
+            final int rowCount,
+            @Nullable final LongIntHashMap index) {
+        mSpec = spec;
+        mValues = values;
+        mRowCount = rowCount;
+        mIndex = index;
+    }
+
+    /**
+     * Reads the columns of all rows.
+     *
+     * @param c    the {@link Cursor} to read, left open
+     * @param spec the columns to read
+     * @return new {@link PrimitiveColumns}
+     * @throws IllegalArgumentException if a column does not exist
+     */
+    @NonNull
+    static PrimitiveColumns read(@NonNull final Cursor c, @NonNull final Spec spec) {
+        final int columnCount = spec.columns.length;
+        final int[] columnIndices = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnIndices[i] = c.getColumnIndexOrThrow(spec.columns[i]);
+        }
+
+        final int capacity = c.getCount();
+        final int[][] ints = new int[columnCount][];
+        final long[][] longs = new long[columnCount][];
+        final double[][] doubles = new double[columnCount][];
+        for (int i = 0; i < columnCount; i++) {
+            switch (spec.types[i]) {
+                case TYPE_INT:
+                    ints[i] = new int[capacity];
+                    break;
+
+                case TYPE_LONG:
+                    longs[i] = new long[capacity];
+                    break;
+
+                default:
+                    doubles[i] = new double[capacity];
+                    break;
+            }
+        }
+
+        int row = 0;
+        c.moveToPosition(-1);
+        while (row < capacity && c.moveToNext()) {
+            for (int i = 0; i < columnCount; i++) {
+                switch (spec.types[i]) {
+                    case TYPE_INT:
+                        ints[i][row] = c.getInt(columnIndices[i]);
+                        break;
+
+                    case TYPE_LONG:
+                        longs[i][row] = c.getLong(columnIndices[i]);
+                        break;
+
+                    default:
+                        doubles[i][row] = c.getDouble(columnIndices[i]);
+                        break;
+                }
+            }
+            row++;
+        }
+        c.moveToPosition(-1);
+
+        final Object[] values = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            switch (spec.types[i]) {
+                case TYPE_INT:
+                    values[i] = row == capacity ? ints[i] : Arrays.copyOf(ints[i], row);
+                    break;
+
+                case TYPE_LONG:
+                    values[i] = row == capacity ? longs[i] : Arrays.copyOf(longs[i], row);
+                    break;
+
+                default:
+                    values[i] = row == capacity ? doubles[i] : Arrays.copyOf(doubles[i], row);
+                    break;
+            }
+        }
+
+        LongIntHashMap index = null;
+        if (spec.indexedColumn != -1) {
+            index = new LongIntHashMap(row);
+            for (int position = row - 1; position >= 0; position--) {
+                // In reverse, so that the first position wins for duplicates
+                index.put(valueAt(spec, values, spec.indexedColumn, position), position);
+            }
+        }
+
+        return new PrimitiveColumns(spec, values, row, index);
+    }
+
+    private static long valueAt(
+            @NonNull final Spec spec,
+            @NonNull final Object[] values,
+            final int column,
+            final int position) {
+        return spec.types[column] == TYPE_INT
+                ? ((int[]) values[column])[position]
+                : ((long[]) values[column])[position];
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @param column the name of a column added with {@link Spec.Builder#addIntColumn(String)}
+     * @return the values of the column, one per row
+     * @throws IllegalArgumentException if the column was not added as an int column
+     */
+    @NonNull
+    public int[] getInts(@NonNull final String column) {
+        return (int[]) mValues[columnOf(column, TYPE_INT)];
+    }
+
+    /**
+     * @param column the name of a column added with {@link Spec.Builder#addLongColumn(String)}
+     * @return the values of the column, one per row
+     * @throws IllegalArgumentException if the column was not added as a long column
+     */
+    @NonNull
+    public long[] getLongs(@NonNull final String column) {
+        return (long[]) mValues[columnOf(column, TYPE_LONG)];
+    }
+
+    /**
+     * @param column the name of a column added with {@link Spec.Builder#addDoubleColumn(String)}
+     * @return the values of the column, one per row
+     * @throws IllegalArgumentException if the column was not added as a double column
+     */
+    @NonNull
+    public double[] getDoubles(@NonNull final String column) {
+        return (double[]) mValues[columnOf(column, TYPE_DOUBLE)];
+    }
+
+    /**
+     * @param value the value to look for in the indexed column
+     * @return the first row position with the value, or -1 if none
+     * @throws IllegalStateException if no column is indexed
+     * @see Spec.Builder#setIndexedColumn(String)
+     */
+    public int indexOf(final long value) {
+        if (mIndex == null) {
+            throw new IllegalStateException("No indexed column");
+        }
+        return mIndex.get(value);
+    }
+
+    /**
+     * @param value the value to look for in the indexed column
+     * @return true if any row has the value
+     * @throws IllegalStateException if no column is indexed
+     * @see Spec.Builder#setIndexedColumn(String)
+     */
+    public boolean contains(final long value) {
+        return indexOf(value) != -1;
+    }
+
+    private int columnOf(@NonNull final String column, final int type) {
+        for (int i = 0; i < mSpec.columns.length; i++) {
+            if (mSpec.columns[i].equals(column) && mSpec.types[i] == type) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column not added with this type: " + column);
+    }
+
+    /**
+     * The columns to read into {@link PrimitiveColumns}. Create using {@link Spec.Builder}.
+     */
+    public static final class Spec {
+
+        String[] columns;
+        int[] types;
+        int indexedColumn;
+
+        Spec() {
+
+        }
+
+        /**
+         * {@link Spec} builder.
+         * <p>
+         * At least one column is required.
+         */
+        public static final class Builder {
+
+            private final List<String> mColumns = new ArrayList<>();
+            private final List<Integer> mTypes = new ArrayList<>();
+            private String mIndexedColumn;
+
+            public Builder() {
+
+            }
+
+            /**
+             * @param column the name of a column to read with {@link Cursor#getInt(int)}
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder addIntColumn(@NonNull final String column) {
+                return addColumn(column, TYPE_INT);
+            }
+
+            /**
+             * @param column the name of a column to read with {@link Cursor#getLong(int)}
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder addLongColumn(@NonNull final String column) {
+                return addColumn(column, TYPE_LONG);
+            }
+
+            /**
+             * @param column the name of a column to read with {@link Cursor#getDouble(int)}
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder addDoubleColumn(@NonNull final String column) {
+                return addColumn(column, TYPE_DOUBLE);
+            }
+
+            /**
+             * Builds a hash index of an int or long column, for
+             * {@link PrimitiveColumns#indexOf(long)} and {@link PrimitiveColumns#contains(long)}.
+             *
+             * @param column the name of a column added as an int or long column
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setIndexedColumn(@Nullable final String column) {
+                mIndexedColumn = column;
+                return this;
+            }
+
+            @NonNull
+            private Builder addColumn(@NonNull final String column, final int type) {
+                //noinspection ConstantConditions
+                if (column == null) {
+                    throw new NullPointerException("column must not be null");
+                }
+                mColumns.add(column);
+                mTypes.add(type);
+                return this;
+            }
+
+            /**
+             * Creates the {@link Spec}
+             *
+             * @return the {@link Spec}
+             * @throws IllegalStateException if no columns were added, or the indexed column was
+             *                               not added as an int or long column
+             */
+            @NonNull
+            public Spec create() {
+                if (mColumns.isEmpty()) {
+                    throw new IllegalStateException("No columns added");
+                }
+                final Spec spec = new Spec();
+                spec.columns = mColumns.toArray(new String[mColumns.size()]);
+                spec.types = new int[mTypes.size()];
+                for (int i = 0; i < spec.types.length; i++) {
+                    spec.types[i] = mTypes.get(i);
+                }
+                spec.indexedColumn = -1;
+                if (mIndexedColumn != null) {
+                    for (int i = 0; i < spec.columns.length; i++) {
+                        if (mIndexedColumn.equals(spec.columns[i])
+                                && spec.types[i] != TYPE_DOUBLE) {
+                            spec.indexedColumn = i;
+                            break;
+                        }
+                    }
+                    if (spec.indexedColumn == -1) {
+                        throw new IllegalStateException(
+                                "Indexed column not added as an int or long column");
+                    }
+                }
+                return spec;
+            }
+        }
+    }
+}
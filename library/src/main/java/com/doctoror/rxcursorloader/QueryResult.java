@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Result of one {@link RxCursorLoader.Query} of
+ * {@link RxCursorLoader#singles(android.content.ContentResolver, java.util.List, int, long,
+ * java.util.concurrent.TimeUnit, io.reactivex.Scheduler)}: either the loaded {@link Cursor},
+ * or the error that the query failed with.
+ */
+public final class QueryResult {
+
+    private final int mIndex;
+
+    @NonNull
+    private final RxCursorLoader.Query mQuery;
+
+    @Nullable
+    private final Cursor mCursor;
+
+    @Nullable
+    private final Throwable mError;
+
+    QueryResult(
+            final int index,
+            @NonNull final RxCursorLoader.Query query,
+            @Nullable final Cursor cursor,
+            @Nullable final Throwable error) {
+        mIndex = index;
+        mQuery = query;
+        mCursor = cursor;
+        mError = error;
+    }
+
+    /**
+     * @return the index of the {@link RxCursorLoader.Query} in the list of queries
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * @return the {@link RxCursorLoader.Query} this result was loaded for
+     */
+    @NonNull
+    public RxCursorLoader.Query getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * @return the loaded {@link Cursor}, which must be closed by the caller, or null if the
+     * query failed
+     */
+    @Nullable
+    public Cursor getCursor() {
+        return mCursor;
+    }
+
+    /**
+     * @return the error the query failed with, or null if it succeeded. For instance,
+     * {@link QueryReturnedNullException}, or {@link java.util.concurrent.TimeoutException} if
+     * it did not finish in time.
+     */
+    @Nullable
+    public Throwable getError() {
+        return mError;
+    }
+
+    /**
+     * @return true if the query succeeded and {@link #getCursor()} is not null
+     */
+    public boolean isSuccessful() {
+        return mCursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryResult{" +
+                "index=" + mIndex +
+                ", query=" + mQuery +
+                ", cursor=" + mCursor +
+                ", error=" + mError +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A {@link Cursor} shared between several consumers. It is closed when the owner and all
+ * acquired handles have released it.
+ */
+final class RefCountedCursor {
+
+    /**
+     * Starts at one, which is the reference held by the owner.
+     */
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    @NonNull
+    private final Cursor mCursor;
+
+    RefCountedCursor(@NonNull final Cursor cursor) {
+        mCursor = cursor;
+    }
+
+    /**
+     * Acquires a new handle. The handle must be closed when no longer used.
+     *
+     * @return the new handle, or null if the {@link Cursor} has already been released
+     */
+    @Nullable
+    SharedCursorHandle acquire() {
+        for (; ; ) {
+            final int count = mRefCount.get();
+            if (count == 0) {
+                return null;
+            }
+            if (mRefCount.compareAndSet(count, count + 1)) {
+                return new SharedCursorHandle(this, mCursor);
+            }
+        }
+    }
+
+    /**
+     * Releases one reference and closes the {@link Cursor} if it was the last one.
+     */
+    void release() {
+        if (mRefCount.decrementAndGet() == 0) {
+            mCursor.close();
+        }
+    }
+}
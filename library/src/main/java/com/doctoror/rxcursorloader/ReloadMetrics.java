@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Metrics of a single reload of a loader subscription, passed to
+ * {@link LoaderMetricsListener#onReload(ReloadMetrics)}.
+ * <p>
+ * Durations are in nanoseconds. Counters are cumulative for the subscription.
+ */
+public final class ReloadMetrics {
+
+    @NonNull
+    private final RxCursorLoader.Query mQuery;
+
+    private final long mSubscriptionId;
+    private final long mReloadCount;
+    private final long mQueryTimeNanos;
+    private final long mWindowFillTimeNanos;
+    private final int mRowCount;
+    private final long mNotificationCount;
+    private final long mCoalescedNotificationCount;
+    private final long mNotificationToEmissionNanos;
+    private final int mLiveCursorCount;
+    private final boolean mEmitted;
+
+    ReloadMetrics(
+            @NonNull final RxCursorLoader.Query query,
+            final long subscriptionId,
+            final long reloadCount,
+            final long queryTimeNanos,
+            final long windowFillTimeNanos,
+            final int rowCount,
+            final long notificationCount,
+            final long coalescedNotificationCount,
+            final long notificationToEmissionNanos,
+            final int liveCursorCount,
+            final boolean emitted) {
+        mQuery = query;
+        mSubscriptionId = subscriptionId;
+        mReloadCount = reloadCount;
+        mQueryTimeNanos = queryTimeNanos;
+        mWindowFillTimeNanos = windowFillTimeNanos;
+        mRowCount = rowCount;
+        mNotificationCount = notificationCount;
+        mCoalescedNotificationCount = coalescedNotificationCount;
+        mNotificationToEmissionNanos = notificationToEmissionNanos;
+        mLiveCursorCount = liveCursorCount;
+        mEmitted = emitted;
+    }
+
+    /**
+     * @return the {@link RxCursorLoader.Query} that was loaded
+     */
+    @NonNull
+    public RxCursorLoader.Query getQuery() {
+        return mQuery;
+    }
+
+    /**
+     * @return the id that distinguishes subscriptions, unique within the process
+     */
+    public long getSubscriptionId() {
+        return mSubscriptionId;
+    }
+
+    /**
+     * @return the number of reloads of this subscription, including this one
+     */
+    public long getReloadCount() {
+        return mReloadCount;
+    }
+
+    /**
+     * @return the time the {@link android.content.ContentResolver} query took
+     */
+    public long getQueryTimeNanos() {
+        return mQueryTimeNanos;
+    }
+
+    /**
+     * @return the time spent filling the {@link android.database.Cursor} window, or zero if
+     * window pre-fill is disabled
+     * @see RxCursorLoader.Options.Builder#setWindowPrefill(boolean)
+     */
+    public long getWindowFillTimeNanos() {
+        return mWindowFillTimeNanos;
+    }
+
+    /**
+     * @return the number of loaded rows, or -1 if unknown because the query failed or window
+     * pre-fill is disabled
+     */
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * @return the number of content change notifications received
+     */
+    public long getNotificationCount() {
+        return mNotificationCount;
+    }
+
+    /**
+     * @return the number of notifications merged into an already pending reload
+     */
+    public long getCoalescedNotificationCount() {
+        return mCoalescedNotificationCount;
+    }
+
+    /**
+     * @return the time from the first notification that caused this reload to the emission of
+     * the result, or -1 if not caused by a notification or not emitted
+     */
+    public long getNotificationToEmissionNanos() {
+        return mNotificationToEmissionNanos;
+    }
+
+    /**
+     * @return the number of cursors emitted to this subscription that are not closed yet,
+     * including this one if emitted
+     */
+    public int getLiveCursorCount() {
+        return mLiveCursorCount;
+    }
+
+    /**
+     * @return true if the result was emitted, false if it was superseded by a newer reload,
+     * unchanged, or the subscription is disposed
+     */
+    public boolean isEmitted() {
+        return mEmitted;
+    }
+
+    @Override
+    public String toString() {
+        return "ReloadMetrics{" +
+                "query=" + mQuery +
+                ", subscriptionId=" + mSubscriptionId +
+                ", reloadCount=" + mReloadCount +
+                ", queryTimeNanos=" + mQueryTimeNanos +
+                ", windowFillTimeNanos=" + mWindowFillTimeNanos +
+                ", rowCount=" + mRowCount +
+                ", notificationCount=" + mNotificationCount +
+                ", coalescedNotificationCount=" + mCoalescedNotificationCount +
+                ", notificationToEmissionNanos=" + mNotificationToEmissionNanos +
+                ", liveCursorCount=" + mLiveCursorCount +
+                ", emitted=" + mEmitted +
+                '}';
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.Scheduler;
+
+/**
+ * Runs reloads of any number of loaders on a {@link Scheduler}, with at most a fixed number of
+ * reloads running at a time for every content provider authority.
+ * <p>
+ * Reloads that exceed the limit are queued, and run in the order of their priority, higher
+ * first, then in the order they were requested. A reload that is requested again while queued
+ * is not queued twice, and takes the higher of the two priorities. Reloads of different
+ * authorities never wait for each other.
+ * <p>
+ * Pass to {@link RxCursorLoader.Options.Builder#setReloadScheduler(ReloadScheduler, int)}. A
+ * single {@link ReloadScheduler} is meant to be shared by all loaders of an application, so
+ * that a content change that affects many loaders does not run all their queries at once.
+ * Safe to use from any thread.
+ */
+public final class ReloadScheduler {
+
+    /**
+     * The priority used when none is specified.
+     */
+    public static final int PRIORITY_DEFAULT = 0;
+
+    private static final Comparator<Task> ORDER = new Comparator<Task>() {
+
+        @Override
+        public int compare(final Task a, final Task b) {
+            if (a.priority != b.priority) {
+                return a.priority > b.priority ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    @NonNull
+    private final Scheduler mScheduler;
+
+    private final int mMaxConcurrentReloads;
+
+    private final Map<String, AuthorityQueue> mQueues = new HashMap<>();
+
+    /**
+     * Queued, not yet running, tasks by their reload.
+     */
+    private final Map<Runnable, Task> mQueued = new HashMap<>();
+
+    private long mSequence;
+
+    /**
+     * @param scheduler            the {@link Scheduler} to run reloads on
+     * @param maxConcurrentReloads the maximum number of reloads running at a time for every
+     *                             authority
+     */
+    public ReloadScheduler(@NonNull final Scheduler scheduler, final int maxConcurrentReloads) {
+        //noinspection ConstantConditions
+        if (scheduler == null) {
+            throw new NullPointerException("Scheduler must not be null");
+        }
+        if (maxConcurrentReloads <= 0) {
+            throw new IllegalArgumentException("maxConcurrentReloads must be positive");
+        }
+        mScheduler = scheduler;
+        mMaxConcurrentReloads = maxConcurrentReloads;
+    }
+
+    /**
+     * @return the number of queued reloads of all authorities
+     */
+    public synchronized int getQueuedCount() {
+        return mQueued.size();
+    }
+
+    /**
+     * Runs the reload as soon as the authority has a free slot, unless it is already queued.
+     *
+     * @param authority the authority the reload queries, may be null
+     * @param reload    the reload
+     * @param priority  the priority, higher runs first
+     */
+    void schedule(
+            @Nullable final String authority,
+            @NonNull final Runnable reload,
+            final int priority) {
+        final String key = authority != null ? authority : "";
+        final List<Task> ready;
+        synchronized (this) {
+            final Task queued = mQueued.get(reload);
+            if (queued != null) {
+                if (queued.priority < priority) {
+                    final AuthorityQueue queue = mQueues.get(queued.authority);
+                    queue.pending.remove(queued);
+                    queued.priority = priority;
+                    queue.pending.add(queued);
+                }
+                return;
+            }
+
+            AuthorityQueue queue = mQueues.get(key);
+            if (queue == null) {
+                queue = new AuthorityQueue();
+                mQueues.put(key, queue);
+            }
+            final Task task = new Task(key, reload, priority, mSequence++);
+            mQueued.put(reload, task);
+            queue.pending.add(task);
+            ready = pollReady(queue);
+        }
+        dispatch(ready);
+    }
+
+    /**
+     * Removes the reload from the queue, if queued. Does not affect the reload if it is already
+     * running.
+     *
+     * @param reload the reload passed to {@link #schedule(String, Runnable, int)}
+     */
+    void cancel(@NonNull final Runnable reload) {
+        synchronized (this) {
+            final Task queued = mQueued.remove(reload);
+            if (queued != null) {
+                final AuthorityQueue queue = mQueues.get(queued.authority);
+                queue.pending.remove(queued);
+                removeIfIdle(queued.authority, queue);
+            }
+        }
+    }
+
+    private void onFinished(@NonNull final Task task) {
+        final List<Task> ready;
+        synchronized (this) {
+            final AuthorityQueue queue = mQueues.get(task.authority);
+            queue.running--;
+            ready = pollReady(queue);
+            removeIfIdle(task.authority, queue);
+        }
+        dispatch(ready);
+    }
+
+    /**
+     * Takes the tasks that may run now out of the queue and counts them as running. Must be
+     * called while holding the lock.
+     */
+    @Nullable
+    private List<Task> pollReady(@NonNull final AuthorityQueue queue) {
+        List<Task> ready = null;
+        while (queue.running < mMaxConcurrentReloads && !queue.pending.isEmpty()) {
+            final Task task = queue.pending.poll();
+            mQueued.remove(task.reload);
+            queue.running++;
+            if (ready == null) {
+                ready = new ArrayList<>(1);
+            }
+            ready.add(task);
+        }
+        return ready;
+    }
+
+    private void removeIfIdle(
+            @NonNull final String authority,
+            @NonNull final AuthorityQueue queue) {
+        if (queue.running == 0 && queue.pending.isEmpty()) {
+            mQueues.remove(authority);
+        }
+    }
+
+    private void dispatch(@Nullable final List<Task> ready) {
+        if (ready != null) {
+            for (final Task task : ready) {
+                mScheduler.scheduleDirect(task);
+            }
+        }
+    }
+
+    private static final class AuthorityQueue {
+
+        final PriorityQueue<Task> pending = new PriorityQueue<>(11, ORDER);
+
+        int running;
+    }
+
+    private final class Task implements Runnable {
+
+        final String authority;
+        final Runnable reload;
+        final long sequence;
+
+        int priority;
+
+        Task(
+                @NonNull final String authority,
+                @NonNull final Runnable reload,
+                final int priority,
+                final long sequence) {
+            this.authority = authority;
+            this.reload = reload;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            try {
+                reload.run();
+            } finally {
+                onFinished(this);
+            }
+        }
+    }
+}
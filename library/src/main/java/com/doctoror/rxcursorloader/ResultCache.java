@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * In-memory LRU cache of loaded results, keyed by {@link RxCursorLoader.Query}, for
+ * stale-while-revalidate loading.
+ * <p>
+ * A loader that uses the cache emits the cached result to a new subscriber right away, and
+ * then the result of the query as usual. Results are stored in detached form, so the cache does
+ * not keep any {@link android.database.Cursor} open. A content change received by a loader
+ * removes the result of its {@link RxCursorLoader.Query}, until the reload stores a new one.
+ * <p>
+ * Pass to {@link RxCursorLoader.Options.Builder#setResultCache(ResultCache)}. A single
+ * {@link ResultCache} may be shared by any number of loaders. Safe to use from any thread.
+ */
+public final class ResultCache {
+
+    private final LinkedHashMap<RxCursorLoader.Query, CursorSnapshot> mEntries
+            = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long mMaxWeight;
+    private final boolean mWeighBytes;
+
+    private long mWeight;
+
+    private ResultCache(final long maxWeight, final boolean weighBytes) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max size must be positive");
+        }
+        mMaxWeight = maxWeight;
+        mWeighBytes = weighBytes;
+    }
+
+    /**
+     * Creates a {@link ResultCache} bounded by the total number of rows of all results.
+     *
+     * @param maxRows the maximum number of rows
+     * @return new {@link ResultCache}
+     */
+    @NonNull
+    public static ResultCache withMaxRows(final int maxRows) {
+        return new ResultCache(maxRows, false);
+    }
+
+    /**
+     * Creates a {@link ResultCache} bounded by the estimated size of values of all results.
+     *
+     * @param maxBytes the maximum size in bytes
+     * @return new {@link ResultCache}
+     */
+    @NonNull
+    public static ResultCache withMaxBytes(final long maxBytes) {
+        return new ResultCache(maxBytes, true);
+    }
+
+    /**
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+        mWeight = 0;
+    }
+
+    @Nullable
+    synchronized CursorSnapshot get(@NonNull final RxCursorLoader.Query query) {
+        return mEntries.get(query);
+    }
+
+    synchronized void put(
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final CursorSnapshot snapshot) {
+        final long weight = weigh(snapshot);
+        invalidate(query);
+        if (weight > mMaxWeight) {
+            return;
+        }
+        mEntries.put(query, snapshot);
+        mWeight += weight;
+
+        final Iterator<Map.Entry<RxCursorLoader.Query, CursorSnapshot>> iterator
+                = mEntries.entrySet().iterator();
+        while (mWeight > mMaxWeight) {
+            mWeight -= weigh(iterator.next().getValue());
+            iterator.remove();
+        }
+    }
+
+    synchronized void invalidate(@NonNull final RxCursorLoader.Query query) {
+        final CursorSnapshot removed = mEntries.remove(query);
+        if (removed != null) {
+            mWeight -= weigh(removed);
+        }
+    }
+
+    private long weigh(@NonNull final CursorSnapshot snapshot) {
+        return mWeighBytes ? snapshot.getSizeBytes() : snapshot.getRowCount();
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Maps a {@link Cursor} row to an object.
+ *
+ * @param <T> the object type
+ * @see RxCursorLoader#rows(android.content.ContentResolver, RxCursorLoader.Query,
+ * io.reactivex.Scheduler, RowMapper)
+ */
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row of the {@link Cursor}. Must not move the {@link Cursor}.
+     *
+     * @param cursor        the {@link Cursor} positioned at the row to map
+     * @param columnIndices the column indices resolved once per loaded {@link Cursor}. If the
+     *                      {@link RxCursorLoader.Query} has a projection, the index at position
+     *                      i is the index of the projection column at position i. Otherwise
+     *                      these are the indices of all {@link Cursor} columns in order.
+     * @return the mapped object. Must not be null.
+     */
+    @NonNull
+    T map(@NonNull Cursor cursor, @NonNull int[] columnIndices);
+}
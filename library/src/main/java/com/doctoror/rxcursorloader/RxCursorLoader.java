@@ -22,6 +22,8 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -59,6 +61,10 @@ import io.reactivex.schedulers.Schedulers;
  * If you need the loader to register ContentObserver and reload cursor passing it to onNext()
  * every time content changes, like {@link android.content.CursorLoader}, use
  * {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy)}.
+ * <br><br>
+ * Additional loader behavior, like coalescing of change notifications, can be configured with
+ * {@link Options} passed to
+ * {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy, Options)}.
  */
 public final class RxCursorLoader {
 
@@ -73,7 +79,10 @@ public final class RxCursorLoader {
      * Used to enable/disable debug level logs.
      * <p>
      * Disabled by default.
+     *
+     * @deprecated use {@link Options.Builder#setMetricsListener(LoaderMetricsListener)} instead.
      */
+    @Deprecated
     public static void setDebugLoggingEnabled(final boolean loggingEnabled) {
         LOG_DEBUG = loggingEnabled;
     }
@@ -109,7 +118,8 @@ public final class RxCursorLoader {
      * Every time the content changes, the Cursor will be reloaded and passed to {@link
      * Observer#onNext(Object)}.
      * <p>
-     * Make sure to close old cursor because cursors are not automatically closed
+     * Make sure to close old cursor because cursors are not automatically closed, unless
+     * managed lifecycle is enabled with {@link Options.Builder#setManagedCursors(Scheduler)}
      * <p>
      * {@link Observer#onError(Throwable)}} is called if {@link RuntimeException} is caught when running a
      * query.
@@ -138,8 +148,27 @@ public final class RxCursorLoader {
             @NonNull final ContentResolver resolver,
             @NonNull final Query query,
             @NonNull final Scheduler scheduler) {
+        return observable(resolver, query, scheduler, Options.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #observable(ContentResolver, Query, Scheduler)}, but with additional
+     * {@link Options}.
+     *
+     * @param resolver  {@link ContentResolver} to use
+     * @param query     the {@link Query} to use
+     * @param scheduler the {@link Scheduler} to emit items from
+     * @param options   the {@link Options} to use
+     * @return new {@link Observable}.
+     */
+    @NonNull
+    public static Observable<Cursor> observable(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final Options options) {
         return RxCursorLoaderFlowableFactory
-                .create(resolver, query, scheduler, BackpressureStrategy.MISSING)
+                .create(resolver, query, scheduler, BackpressureStrategy.MISSING, options)
                 .toObservable();
     }
 
@@ -155,7 +184,12 @@ public final class RxCursorLoader {
      * Every time the content changes, the Cursor will be reloaded and passed to {@link
      * Observer#onNext(Object)}.
      * <p>
-     * Make sure to close old cursor because cursors are not automatically closed
+     * With {@link BackpressureStrategy#LATEST} or {@link BackpressureStrategy#DROP}, the query
+     * does not run while the subscriber has no outstanding requests. A content change only marks
+     * the loader dirty, and it reloads once the subscriber requests more.
+     * <p>
+     * Make sure to close old cursor because cursors are not automatically closed, unless
+     * managed lifecycle is enabled with {@link Options.Builder#setManagedCursors(Scheduler)}
      * <p>
      * {@link Observer#onError(Throwable)}} is called if {@link RuntimeException} is caught when running a
      * query.
@@ -188,8 +222,29 @@ public final class RxCursorLoader {
             @NonNull final Query query,
             @NonNull final Scheduler scheduler,
             @NonNull final BackpressureStrategy backpressureStrategy) {
+        return flowable(resolver, query, scheduler, backpressureStrategy, Options.DEFAULT);
+    }
+
+    /**
+     * Same as {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy)}, but
+     * with additional {@link Options}.
+     *
+     * @param resolver             {@link ContentResolver} to use
+     * @param query                the {@link Query} to use
+     * @param scheduler            the {@link Scheduler} to emit items from
+     * @param backpressureStrategy the {@link BackpressureStrategy} to use.
+     * @param options              the {@link Options} to use
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<Cursor> flowable(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final Options options) {
         return RxCursorLoaderFlowableFactory
-                .create(resolver, query, scheduler, backpressureStrategy);
+                .create(resolver, query, scheduler, backpressureStrategy, options);
     }
 
     /**
@@ -208,6 +263,241 @@ public final class RxCursorLoader {
         return RxCursorLoaderSingleFactory.single(resolver, query);
     }
 
+    /**
+     * Create a new {@link Flowable} that loads the {@link PagedQuery} one page at a time.
+     * <p>
+     * Every emitted {@link Cursor} contains a single page of at most
+     * {@link PagedQuery#getPageSize()} rows. The next page is loaded only when requested by the
+     * subscriber, so the number of loaded rows grows only with what is actually consumed. The
+     * {@link Flowable} completes after emitting a page that has less rows than the page size.
+     * <p>
+     * On API 26+ the page is requested with {@link ContentResolver#QUERY_ARG_LIMIT} and
+     * {@link ContentResolver#QUERY_ARG_OFFSET}. If the provider does not honor these, or on
+     * older API levels, LIMIT and OFFSET are appended to the sort order.
+     * <p>
+     * Unlike {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy)}, this
+     * does not reload on content changes. Cursors are not automatically closed.
+     * <p>
+     * If the query returns null, {@link QueryReturnedNullException} is passed to
+     * {@link Observer#onError(Throwable)}.
+     *
+     * @param resolver   {@link ContentResolver} to use
+     * @param pagedQuery the {@link PagedQuery} to use
+     * @param scheduler  the {@link Scheduler} to load pages on
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<Cursor> paged(
+            @NonNull final ContentResolver resolver,
+            @NonNull final PagedQuery pagedQuery,
+            @NonNull final Scheduler scheduler) {
+        return RxCursorLoaderPagedFactory.create(resolver, pagedQuery, scheduler);
+    }
+
+    /**
+     * Create a new {@link Flowable} that loads the {@link Query} once and emits every row
+     * mapped by the {@link RowMapper}.
+     * <p>
+     * Column indices are resolved once, and rows are mapped on the {@link Scheduler} only as
+     * requested by the subscriber. The {@link Cursor} is closed when all rows are emitted, on
+     * error, or when cancelled, so the consumer never holds a live {@link Cursor}.
+     * <p>
+     * If the query returns null, {@link QueryReturnedNullException} is passed to
+     * {@link Observer#onError(Throwable)}.
+     *
+     * @param resolver  {@link ContentResolver} to use
+     * @param query     the {@link Query} to use
+     * @param scheduler the {@link Scheduler} to load and map rows on
+     * @param mapper    the {@link RowMapper} to map rows with
+     * @param <T>       the mapped row type
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static <T> Flowable<T> rows(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final RowMapper<T> mapper) {
+        return RxCursorLoaderRowsFactory.create(resolver, query, scheduler, mapper);
+    }
+
+    /**
+     * Create a new {@link Flowable} that works like
+     * {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy, Options)}, but
+     * wraps every {@link Cursor} in a {@link CursorChangeSet} that describes what changed since
+     * the previous one. Rows are matched by the value of the id column.
+     * <p>
+     * The diff is computed on the {@link Scheduler}, and change sets are buffered rather than
+     * dropped, because every one of them is relative to the previous one. Managed cursor lifecycle
+     * is not applied, so the consumer must close the previous {@link Cursor} once it switched to
+     * the next one.
+     *
+     * @param resolver  {@link ContentResolver} to use
+     * @param query     the {@link Query} to use
+     * @param scheduler the {@link Scheduler} to load and diff cursors on
+     * @param options   the {@link Options} to use
+     * @param idColumn  the name of the column that uniquely identifies a row
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<CursorChangeSet> changeSets(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final Options options,
+            @NonNull final String idColumn) {
+        return RxCursorLoaderFlowableFactory.createChangeSets(
+                resolver, query, scheduler, options, idColumn);
+    }
+
+    /**
+     * Create a new {@link Flowable} that loads several related {@link Query}s and emits their
+     * cursors together as a {@link MultiCursorResult}.
+     * <p>
+     * A content change reloads only the queries which {@link Uri} it affects, all on a single
+     * pass of the {@link Scheduler}, followed by a single emission. Changes that arrive during a
+     * pass are handled by one more pass. Use {@link Options.Builder#setCoalescing(long, long,
+     * TimeUnit)} to let related changes settle into a single pass.
+     * <p>
+     * If any query fails or returns null, the error is passed to
+     * {@link Observer#onError(Throwable)}.
+     * <p>
+     * Of the {@link Options}, coalescing, window pre-fill, observer dispatch and
+     * {@link LoaderStats} apply. Cursors are not automatically closed. The consumer must close
+     * every {@link Cursor} of the previous result for which
+     * {@link MultiCursorResult#isChanged(int)} of the new result returns true, and all cursors
+     * of the last result when done.
+     * <p>
+     * A result that is dropped because of backpressure is merged into the next delivered one,
+     * so {@link MultiCursorResult#isChanged(int)} is always relative to the previous delivered
+     * result, and cursors that were never delivered are closed by the loader.
+     *
+     * @param resolver             {@link ContentResolver} to use
+     * @param queries              the {@link Query}s to use, at least one
+     * @param scheduler            the {@link Scheduler} to load cursors on
+     * @param backpressureStrategy the {@link BackpressureStrategy} to use
+     * @param options              the {@link Options} to use
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<MultiCursorResult> multi(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<Query> queries,
+            @NonNull final Scheduler scheduler,
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final Options options) {
+        return RxCursorLoaderMultiFactory.create(
+                resolver, queries, scheduler, backpressureStrategy, options);
+    }
+
+    /**
+     * Same as {@link #singles(ContentResolver, List, int, long, TimeUnit, Scheduler)}, without
+     * timeout.
+     *
+     * @param resolver    {@link ContentResolver} to use
+     * @param queries     the {@link Query}s to load
+     * @param parallelism the maximum number of queries running at a time
+     * @param scheduler   the {@link Scheduler} to run queries on
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<QueryResult> singles(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<Query> queries,
+            final int parallelism,
+            @NonNull final Scheduler scheduler) {
+        return RxCursorLoaderSingleFactory.singles(
+                resolver, queries, parallelism, 0, TimeUnit.MILLISECONDS, scheduler);
+    }
+
+    /**
+     * Create a new {@link Flowable} that loads every {@link Query} once, like
+     * {@link #single(ContentResolver, Query)}, with at most parallelism queries running at a
+     * time, and emits a {@link QueryResult} for each as soon as it completes, then completes.
+     * <p>
+     * Queries of different authorities are started in turns, so that a slow provider does not
+     * take all parallel slots. A failed query does not affect the others, its
+     * {@link QueryResult} holds the error instead. A query that does not finish within the
+     * timeout is cancelled on API 16+, and its {@link QueryResult} holds a
+     * {@link java.util.concurrent.TimeoutException}. Disposing cancels all running queries.
+     * <p>
+     * Cursors of emitted results must be closed by the consumer, cursors of results not emitted
+     * yet when disposing are closed. To receive all results at once,
+     * use {@link #singlesAll(ContentResolver, List, int, long, TimeUnit, Scheduler)}.
+     *
+     * @param resolver    {@link ContentResolver} to use
+     * @param queries     the {@link Query}s to load
+     * @param parallelism the maximum number of queries running at a time
+     * @param timeout     the maximum time a query may run for, zero for no limit
+     * @param unit        the {@link TimeUnit} of timeout
+     * @param scheduler   the {@link Scheduler} to run queries on, which must be able to run
+     *                    parallelism tasks at a time, for instance {@link Schedulers#io()}
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<QueryResult> singles(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<Query> queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        return RxCursorLoaderSingleFactory.singles(
+                resolver, queries, parallelism, timeout, unit, scheduler);
+    }
+
+    /**
+     * Same as {@link #singles(ContentResolver, List, int, long, TimeUnit, Scheduler)}, but
+     * emits all results at once when the last query completes, in the order of the queries.
+     *
+     * @param resolver    {@link ContentResolver} to use
+     * @param queries     the {@link Query}s to load
+     * @param parallelism the maximum number of queries running at a time
+     * @param timeout     the maximum time a query may run for, zero for no limit
+     * @param unit        the {@link TimeUnit} of timeout
+     * @param scheduler   the {@link Scheduler} to run queries on
+     * @return new {@link Single}.
+     */
+    @NonNull
+    public static Single<List<QueryResult>> singlesAll(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<Query> queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        return RxCursorLoaderSingleFactory.singlesAll(
+                resolver, queries, parallelism, timeout, unit, scheduler);
+    }
+
+    /**
+     * Create a new {@link Flowable} that works like
+     * {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy, Options)}, but
+     * reads the numeric columns described by the {@link PrimitiveColumns.Spec} of every loaded
+     * {@link Cursor} into primitive arrays, and emits them as {@link PrimitiveColumns} instead.
+     * <p>
+     * Columns are read on the {@link Scheduler}, after which the {@link Cursor} is closed, so the
+     * consumer never holds a live {@link Cursor}. If the consumer is slow, only the latest
+     * {@link PrimitiveColumns} is kept.
+     *
+     * @param resolver  {@link ContentResolver} to use
+     * @param query     the {@link Query} to use. The projection must include the columns.
+     * @param scheduler the {@link Scheduler} to load and read cursors on
+     * @param spec      the columns to read
+     * @param options   the {@link Options} to use. Managed cursor lifecycle does not apply.
+     * @return new {@link Flowable}.
+     */
+    @NonNull
+    public static Flowable<PrimitiveColumns> primitiveColumns(
+            @NonNull final ContentResolver resolver,
+            @NonNull final Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final PrimitiveColumns.Spec spec,
+            @NonNull final Options options) {
+        return RxCursorLoaderFlowableFactory.createPrimitiveColumns(
+                resolver, query, scheduler, spec, options);
+    }
+
     /**
      * Parameters for {@link RxCursorLoader}
      */
@@ -380,4 +670,559 @@ public final class RxCursorLoader {
             }
         }
     }
+
+    /**
+     * A {@link Query} loaded in pages by
+     * {@link #paged(ContentResolver, PagedQuery, Scheduler)}
+     */
+    public static final class PagedQuery {
+
+        Query query;
+        int pageSize;
+
+        PagedQuery() {
+
+        }
+
+        /**
+         * @return the {@link Query} to load in pages
+         */
+        @NonNull
+        public Query getQuery() {
+            return query;
+        }
+
+        /**
+         * @return the maximum number of rows in a page
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final PagedQuery that = (PagedQuery) o;
+            return pageSize == that.pageSize && query.equals(that.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * query.hashCode() + pageSize;
+        }
+
+        @Override
+        public String toString() {
+            return "PagedQuery{" +
+                    "query=" + query +
+                    ", pageSize=" + pageSize +
+                    '}';
+        }
+
+        /**
+         * {@link PagedQuery} builder.
+         * <p>
+         * The required parameters are a {@link Query} with a sort order and a page size.
+         */
+        public static final class Builder {
+
+            private Query mQuery;
+            private int mPageSize;
+
+            public Builder() {
+
+            }
+
+            /**
+             * @param query the {@link Query} to load in pages. Must have a sort order, so that
+             *              pages are stable.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setQuery(@NonNull final Query query) {
+                mQuery = query;
+                return this;
+            }
+
+            /**
+             * @param pageSize the maximum number of rows in a page
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setPageSize(final int pageSize) {
+                mPageSize = pageSize;
+                return this;
+            }
+
+            /**
+             * Creates the {@link PagedQuery}
+             *
+             * @return the {@link PagedQuery}
+             * @throws IllegalStateException if query is null or has no sort order, or page size
+             *                               is not positive
+             */
+            @NonNull
+            public PagedQuery create() {
+                if (mQuery == null) {
+                    throw new IllegalStateException("Query not set");
+                }
+                if (mQuery.sortOrder == null) {
+                    throw new IllegalStateException("Query sort order not set");
+                }
+                if (mPageSize <= 0) {
+                    throw new IllegalStateException("Page size must be positive");
+                }
+                final PagedQuery pagedQuery = new PagedQuery();
+                pagedQuery.query = mQuery;
+                pagedQuery.pageSize = mPageSize;
+                return pagedQuery;
+            }
+        }
+    }
+
+    /**
+     * Additional loader behavior for
+     * {@link #flowable(ContentResolver, Query, Scheduler, BackpressureStrategy, Options)} and
+     * {@link #observable(ContentResolver, Query, Scheduler, Options)}.
+     * <p>
+     * Create using {@link Options.Builder}. The same instance may be shared between loaders, in
+     * which case {@link #getStats()} accumulates values from all of them.
+     */
+    public static final class Options {
+
+        /**
+         * Used by the methods that do not take {@link Options}, keeps their original behavior.
+         */
+        static final Options DEFAULT = new Builder()
+                .setWindowPrefill(false)
+                .create();
+
+        long coalesceQuietWindowMillis;
+        long coalesceMaxLatencyMillis;
+        Scheduler managedCursorsScheduler;
+        boolean prefillWindow;
+        ChangeFilter changeFilter;
+        String idColumn;
+        boolean skipUnchanged;
+        ObserverDispatch observerDispatch;
+        PauseController pauseController;
+        LoaderMetricsListener metricsListener;
+        ResultCache resultCache;
+        SnapshotStore snapshotStore;
+        boolean detachCursors;
+        ReloadScheduler reloadScheduler;
+        int reloadPriority;
+        float throttleMaxDutyCycle;
+        long throttleMaxIntervalMillis;
+
+        final LoaderStats stats = new LoaderStats();
+
+        Options() {
+
+        }
+
+        boolean isCoalescingEnabled() {
+            return coalesceQuietWindowMillis > 0;
+        }
+
+        boolean isAdaptiveThrottlingEnabled() {
+            return throttleMaxDutyCycle > 0;
+        }
+
+        /**
+         * @return the {@link LoaderStats} of loaders created with these {@link Options}
+         */
+        @NonNull
+        public LoaderStats getStats() {
+            return stats;
+        }
+
+        /**
+         * The thread content change notifications are dispatched on.
+         *
+         * @see Builder#setObserverDispatch(ObserverDispatch)
+         */
+        public enum ObserverDispatch {
+
+            /**
+             * The main thread.
+             */
+            MAIN,
+
+            /**
+             * A background thread shared by all loaders.
+             */
+            BACKGROUND,
+
+            /**
+             * The binder thread that delivered the notification, without a {@link android.os.Looper} hop.
+             */
+            BINDER
+        }
+
+        /**
+         * {@link Options} builder.
+         * <p>
+         * All options except {@link #setWindowPrefill(boolean)} are disabled by default.
+         */
+        public static final class Builder {
+
+            private long mCoalesceQuietWindowMillis;
+            private long mCoalesceMaxLatencyMillis;
+            private Scheduler mManagedCursorsScheduler;
+            private boolean mPrefillWindow = true;
+            private ChangeFilter mChangeFilter;
+            private String mIdColumn;
+            private boolean mSkipUnchanged;
+            private ObserverDispatch mObserverDispatch = ObserverDispatch.MAIN;
+            private PauseController mPauseController;
+            private LoaderMetricsListener mMetricsListener;
+            private ResultCache mResultCache;
+            private SnapshotStore mSnapshotStore;
+            private boolean mDetachCursors;
+            private ReloadScheduler mReloadScheduler;
+            private int mReloadPriority;
+            private float mThrottleMaxDutyCycle;
+            private long mThrottleMaxIntervalMillis;
+
+            public Builder() {
+
+            }
+
+            /**
+             * Enables coalescing of content change notifications. Instead of reloading on
+             * every notification, the loader waits until no new notification arrived for
+             * quietWindow, so that a burst of notifications results in a single reload. The
+             * reload is never delayed for more than maxLatency after the first notification of
+             * a burst.
+             * <p>
+             * The number of merged notifications is reported by
+             * {@link LoaderStats#getCoalescedNotificationCount()}.
+             *
+             * @param quietWindow the time without notifications after which the reload starts.
+             *                    Zero disables coalescing.
+             * @param maxLatency  the maximum time between the first notification of a burst and
+             *                    the reload. Must not be less than quietWindow.
+             * @param unit        the {@link TimeUnit} of quietWindow and maxLatency
+             * @return this {@link Builder}
+             * @throws IllegalArgumentException if quietWindow is negative or maxLatency is less
+             *                                  than quietWindow
+             */
+            @NonNull
+            public Builder setCoalescing(
+                    final long quietWindow,
+                    final long maxLatency,
+                    @NonNull final TimeUnit unit) {
+                if (quietWindow < 0) {
+                    throw new IllegalArgumentException("quietWindow must not be negative");
+                }
+                if (maxLatency < quietWindow) {
+                    throw new IllegalArgumentException(
+                            "maxLatency must not be less than quietWindow");
+                }
+                mCoalesceQuietWindowMillis = unit.toMillis(quietWindow);
+                mCoalesceMaxLatencyMillis = unit.toMillis(maxLatency);
+                return this;
+            }
+
+            /**
+             * Enables adaptive throttling of reloads. After every reload, the loader waits for a
+             * minimum interval before the next one, and notifications that arrive meanwhile are
+             * merged into a single reload. The interval is adapted to keep the share of time the
+             * provider spends on reloads of this loader under maxDutyCycle, based on measured
+             * query and window fill durations. It also grows while notifications keep arriving
+             * faster than reloads, and shrinks back when they calm down, but never exceeds
+             * maxInterval.
+             * <p>
+             * For instance, with maxDutyCycle of 0.25, a provider that takes a second to answer
+             * is queried at most every four seconds, while a fast one is queried right away.
+             * Takes precedence over {@link #setCoalescing(long, long, TimeUnit)}. Applies to
+             * loaders of a single {@link Query}.
+             *
+             * @param maxDutyCycle the maximum share of time spent reloading, greater than zero
+             *                     and at most one. Zero disables throttling.
+             * @param maxInterval  the maximum interval between reloads
+             * @param unit         the {@link TimeUnit} of maxInterval
+             * @return this {@link Builder}
+             * @throws IllegalArgumentException if maxDutyCycle is not between zero and one, or
+             *                                  maxInterval is negative
+             */
+            @NonNull
+            public Builder setAdaptiveThrottling(
+                    final float maxDutyCycle,
+                    final long maxInterval,
+                    @NonNull final TimeUnit unit) {
+                if (!(maxDutyCycle >= 0f && maxDutyCycle <= 1f)) {
+                    throw new IllegalArgumentException("maxDutyCycle must be between 0 and 1");
+                }
+                if (maxInterval < 0) {
+                    throw new IllegalArgumentException("maxInterval must not be negative");
+                }
+                mThrottleMaxDutyCycle = maxDutyCycle;
+                mThrottleMaxIntervalMillis = unit.toMillis(maxInterval);
+                return this;
+            }
+
+            /**
+             * Enables managed {@link Cursor} lifecycle. When set, the loader closes
+             * <ul>
+             * <li>the previously emitted {@link Cursor}, once the next one is emitted;</li>
+             * <li>every {@link Cursor} dropped because of the {@link BackpressureStrategy};</li>
+             * <li>the last emitted {@link Cursor}, when disposed or terminated.</li>
+             * </ul>
+             * This limits the number of live cursors to one or two per subscription.
+             * <p>
+             * Emitted cursors are closed on the consumer {@link Scheduler}, so that when the
+             * consumer observes on it, the next {@link Cursor} is received before the previous
+             * one is closed. The consumer must not close emitted cursors itself and must not use
+             * a {@link Cursor} after receiving the next one.
+             *
+             * @param consumerScheduler the {@link Scheduler} the cursors are consumed on, for
+             *                          instance the one passed to
+             *                          {@link Flowable#observeOn(Scheduler)}, or
+             *                          {@link Schedulers#trampoline()} if consumed on the
+             *                          emitting thread. Null disables managed lifecycle.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setManagedCursors(@Nullable final Scheduler consumerScheduler) {
+                mManagedCursorsScheduler = consumerScheduler;
+                return this;
+            }
+
+            /**
+             * When enabled, the window of every loaded {@link Cursor} is filled on the loading
+             * {@link Scheduler} before the {@link Cursor} is emitted, like
+             * {@link android.content.CursorLoader} does. Otherwise the window is filled by the
+             * first access to the {@link Cursor}, which often happens on the main thread.
+             * <p>
+             * The time spent is reported by {@link LoaderStats#getWindowFillTimeNanos()}.
+             * <p>
+             * Enabled by default.
+             *
+             * @param prefillWindow whether to fill the window before emitting
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setWindowPrefill(final boolean prefillWindow) {
+                mPrefillWindow = prefillWindow;
+                return this;
+            }
+
+            /**
+             * Sets the {@link ChangeFilter} that is asked whether a content change notification
+             * may affect the result before reloading. Skipped and performed reloads are reported
+             * by {@link LoaderStats#getSkippedReloadCount()} and
+             * {@link LoaderStats#getReloadCount()}.
+             *
+             * @param changeFilter the {@link ChangeFilter}, for instance
+             *                     {@link ChangeFilters#idInResult()}, which requires
+             *                     {@link #setIdColumn(String)}. Null reloads on every
+             *                     notification.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setChangeFilter(@Nullable final ChangeFilter changeFilter) {
+                mChangeFilter = changeFilter;
+                return this;
+            }
+
+            /**
+             * Sets the column which ids of every loaded {@link Cursor} are collected into an
+             * {@link IdSet} that is passed to the {@link ChangeFilter}. Ids are read on the
+             * loading {@link Scheduler}, which also fills the {@link Cursor} window.
+             *
+             * @param idColumn the name of the column that uniquely identifies a row, for instance
+             *                 {@link android.provider.BaseColumns#_ID}. Must be in the
+             *                 projection. Null disables id collection.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setIdColumn(@Nullable final String idColumn) {
+                mIdColumn = idColumn;
+                return this;
+            }
+
+            /**
+             * When enabled, a fingerprint of the contents of every loaded {@link Cursor} is
+             * computed on the loading {@link Scheduler}. A reloaded {@link Cursor} which
+             * fingerprint matches the last emitted one is closed and not emitted, so that
+             * notifications that did not change anything visible cause no downstream work.
+             * <p>
+             * Reading all rows also fills the {@link Cursor} window. Skipped results are reported
+             * by {@link LoaderStats#getUnchangedResultCount()}.
+             *
+             * @param skipUnchanged whether to skip results equal to the last emitted one
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setSkipUnchanged(final boolean skipUnchanged) {
+                mSkipUnchanged = skipUnchanged;
+                return this;
+            }
+
+            /**
+             * Sets the thread content change notifications are received on. The reload itself
+             * always runs on the loading {@link Scheduler}, so {@link ObserverDispatch#MAIN}
+             * only costs a main thread message per notification.
+             * <p>
+             * {@link ObserverDispatch#MAIN} by default.
+             *
+             * @param observerDispatch the {@link ObserverDispatch} to use
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setObserverDispatch(@NonNull final ObserverDispatch observerDispatch) {
+                //noinspection ConstantConditions
+                if (observerDispatch == null) {
+                    throw new NullPointerException("observerDispatch must not be null");
+                }
+                mObserverDispatch = observerDispatch;
+                return this;
+            }
+
+            /**
+             * Sets the {@link PauseController} that pauses and resumes loaders without
+             * disposing them. While paused, content changes do not cause reloads, and on resume
+             * a loader reloads at most once, and only if the content has changed.
+             *
+             * @param pauseController the {@link PauseController}. Null disables pausing.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setPauseController(@Nullable final PauseController pauseController) {
+                mPauseController = pauseController;
+                return this;
+            }
+
+            /**
+             * Sets the {@link LoaderMetricsListener} that receives {@link ReloadMetrics} of every
+             * reload.
+             * <p>
+             * Live cursors are tracked only when set. Cursors that are never closed are counted
+             * until the subscription is disposed.
+             *
+             * @param metricsListener the {@link LoaderMetricsListener}. Null disables metrics.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setMetricsListener(
+                    @Nullable final LoaderMetricsListener metricsListener) {
+                mMetricsListener = metricsListener;
+                return this;
+            }
+
+            /**
+             * Sets the {@link ResultCache} for stale-while-revalidate loading. A new subscriber
+             * first receives a {@link Cursor} over the cached result of the {@link Query}, if
+             * any, and then the loaded one. Every loaded result is copied into the cache on the
+             * loading {@link Scheduler}.
+             *
+             * @param resultCache the {@link ResultCache}. Null disables caching.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setResultCache(@Nullable final ResultCache resultCache) {
+                mResultCache = resultCache;
+                return this;
+            }
+
+            /**
+             * Sets the {@link SnapshotStore} that persists the last loaded result, so that a new
+             * subscriber receives a {@link Cursor} over the stored result right away, even after
+             * a process restart, and then the loaded one. When a {@link ResultCache} is set too,
+             * it is checked first.
+             * <p>
+             * Every emitted result is written to the store on the loading {@link Scheduler}.
+             *
+             * @param snapshotStore the {@link SnapshotStore}. Null disables persisting.
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setSnapshotStore(@Nullable final SnapshotStore snapshotStore) {
+                mSnapshotStore = snapshotStore;
+                return this;
+            }
+
+            /**
+             * When enabled, every loaded {@link Cursor} is copied into a compact columnar
+             * snapshot on the loading {@link Scheduler} and closed right away, and a read-only
+             * {@link Cursor} over the snapshot is emitted instead. The emitted {@link Cursor}
+             * does not pin the provider's window or a binder reference, and its memory is
+             * proportional to the result, with equal strings stored once.
+             * <p>
+             * The emitted {@link Cursor} still must be closed, and does not support
+             * {@link Cursor#requery()} or {@link Cursor#getWindow()}.
+             *
+             * @param detachCursors whether to emit detached cursors
+             * @return this {@link Builder}
+             */
+            @NonNull
+            public Builder setDetachedCursors(final boolean detachCursors) {
+                mDetachCursors = detachCursors;
+                return this;
+            }
+
+            /**
+             * Sets the {@link ReloadScheduler} that runs the queries of the loader, instead of
+             * running them on the loading {@link Scheduler} right away. This applies to the first
+             * load and to reloads after content changes. Loaders of several queries are limited
+             * by the authority of the first one.
+             *
+             * @param reloadScheduler the {@link ReloadScheduler}. Null runs queries right away.
+             * @param priority        the priority of the queries, higher runs first. For
+             *                        instance, loaders of the visible screen should use a higher
+             *                        priority than the ones of screens in the back stack.
+             * @return this {@link Builder}
+             * @see ReloadScheduler#PRIORITY_DEFAULT
+             */
+            @NonNull
+            public Builder setReloadScheduler(
+                    @Nullable final ReloadScheduler reloadScheduler,
+                    final int priority) {
+                mReloadScheduler = reloadScheduler;
+                mReloadPriority = priority;
+                return this;
+            }
+
+            /**
+             * Creates the {@link Options}
+             *
+             * @return the {@link Options}
+             * @throws IllegalStateException if the {@link ChangeFilter} requires an id column
+             *                               that is not set
+             */
+            @NonNull
+            public Options create() {
+                if (mIdColumn == null && ChangeFilters.requiresIdColumn(mChangeFilter)) {
+                    throw new IllegalStateException("Change filter requires an id column");
+                }
+                final Options options = new Options();
+                options.coalesceQuietWindowMillis = mCoalesceQuietWindowMillis;
+                options.coalesceMaxLatencyMillis = mCoalesceMaxLatencyMillis;
+                options.managedCursorsScheduler = mManagedCursorsScheduler;
+                options.prefillWindow = mPrefillWindow;
+                options.changeFilter = mChangeFilter;
+                options.idColumn = mIdColumn;
+                options.skipUnchanged = mSkipUnchanged;
+                options.observerDispatch = mObserverDispatch;
+                options.pauseController = mPauseController;
+                options.metricsListener = mMetricsListener;
+                options.resultCache = mResultCache;
+                options.snapshotStore = mSnapshotStore;
+                options.detachCursors = mDetachCursors;
+                options.reloadScheduler = mReloadScheduler;
+                options.reloadPriority = mReloadPriority;
+                options.throttleMaxDutyCycle = mThrottleMaxDutyCycle;
+                options.throttleMaxIntervalMillis = mThrottleMaxIntervalMillis;
+                return options;
+            }
+        }
+    }
 }
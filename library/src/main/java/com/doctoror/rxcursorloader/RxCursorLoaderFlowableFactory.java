@@ -18,17 +18,29 @@ package com.doctoror.rxcursorloader;
 import android.content.ContentResolver;
 import android.database.ContentObserver;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.Scheduler;
 import io.reactivex.functions.Action;
+import io.reactivex.functions.Function;
 
 import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
 import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
@@ -40,7 +52,8 @@ final class RxCursorLoaderFlowableFactory {
             @NonNull final ContentResolver resolver,
             @NonNull final RxCursorLoader.Query query,
             @NonNull final Scheduler scheduler,
-            @NonNull final BackpressureStrategy backpressureStrategy) {
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final RxCursorLoader.Options options) {
         //noinspection ConstantConditions
         if (resolver == null) {
             throw new NullPointerException("ContentResolver must not be null");
@@ -49,10 +62,129 @@ final class RxCursorLoaderFlowableFactory {
         if (query == null) {
             throw new NullPointerException("Query must not be null");
         }
+        //noinspection ConstantConditions
+        if (options == null) {
+            throw new NullPointerException("Options must not be null");
+        }
 
+        // A result that would be dropped for lack of demand is not worth querying
+        final boolean demandAware = backpressureStrategy == BackpressureStrategy.LATEST
+                || backpressureStrategy == BackpressureStrategy.DROP;
         final CursorLoaderOnSubscribe onSubscribe = new CursorLoaderOnSubscribe(
-                resolver, query, scheduler);
+                resolver, query, scheduler, options, demandAware);
+
+        final Flowable<Cursor> flowable;
+        if (options.managedCursorsScheduler != null) {
+            flowable = create(onSubscribe, scheduler, BackpressureStrategy.MISSING)
+                    .lift(new ManagedCursorOperator(
+                            backpressureStrategy, options.managedCursorsScheduler));
+        } else {
+            flowable = create(onSubscribe, scheduler, backpressureStrategy);
+        }
+        return demandAware
+                ? flowable.lift(new DemandTrackingOperator<Cursor>(
+                onSubscribe.mRequested, onSubscribe.mRequestRunnable))
+                : flowable;
+    }
 
+    @NonNull
+    static Flowable<CursorChangeSet> createChangeSets(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final RxCursorLoader.Options options,
+            @NonNull final String idColumn) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (query == null) {
+            throw new NullPointerException("Query must not be null");
+        }
+        //noinspection ConstantConditions
+        if (options == null) {
+            throw new NullPointerException("Options must not be null");
+        }
+        //noinspection ConstantConditions
+        if (idColumn == null) {
+            throw new NullPointerException("idColumn must not be null");
+        }
+
+        return Flowable.defer(new Callable<Publisher<CursorChangeSet>>() {
+
+            @Override
+            public Publisher<CursorChangeSet> call() {
+                // Differ holds the previous rows, so it must not be shared between subscribers
+                return createUnmanaged(
+                        resolver, query, scheduler, BackpressureStrategy.MISSING, options)
+                        .map(new CursorDiffer(idColumn))
+                        .onBackpressureBuffer();
+            }
+        });
+    }
+
+    @NonNull
+    static Flowable<PrimitiveColumns> createPrimitiveColumns(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final PrimitiveColumns.Spec spec,
+            @NonNull final RxCursorLoader.Options options) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (query == null) {
+            throw new NullPointerException("Query must not be null");
+        }
+        //noinspection ConstantConditions
+        if (spec == null) {
+            throw new NullPointerException("Spec must not be null");
+        }
+        //noinspection ConstantConditions
+        if (options == null) {
+            throw new NullPointerException("Options must not be null");
+        }
+
+        return createUnmanaged(resolver, query, scheduler, BackpressureStrategy.MISSING, options)
+                .map(new Function<Cursor, PrimitiveColumns>() {
+
+                    @Override
+                    public PrimitiveColumns apply(final Cursor c) {
+                        try {
+                            return PrimitiveColumns.read(c, spec);
+                        } finally {
+                            c.close();
+                        }
+                    }
+                })
+                .onBackpressureLatest();
+    }
+
+    /**
+     * Creates the loader {@link Flowable} ignoring
+     * {@link RxCursorLoader.Options#managedCursorsScheduler}.
+     */
+    @NonNull
+    static Flowable<Cursor> createUnmanaged(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final RxCursorLoader.Options options) {
+        return create(
+                new CursorLoaderOnSubscribe(resolver, query, scheduler, options, false),
+                scheduler,
+                backpressureStrategy);
+    }
+
+    @NonNull
+    private static Flowable<Cursor> create(
+            @NonNull final CursorLoaderOnSubscribe onSubscribe,
+            @NonNull final Scheduler scheduler,
+            @NonNull final BackpressureStrategy backpressureStrategy) {
         return Flowable
                 .create(onSubscribe, backpressureStrategy)
                 .subscribeOn(scheduler)
@@ -64,10 +196,18 @@ final class RxCursorLoaderFlowableFactory {
                 });
     }
 
+    private static final AtomicLong SUBSCRIPTION_IDS = new AtomicLong();
+
     private static final class CursorLoaderOnSubscribe
             implements FlowableOnSubscribe<Cursor> {
 
-        private final Object mEmitterLock = new Object();
+        /**
+         * The number of reload requests not served yet. The thread that increments it from
+         * zero drains requests by reloading until it is back to zero, so reloads never run
+         * concurrently and requests that arrive during a reload are served by a single
+         * subsequent reload.
+         */
+        private final AtomicInteger mReloadRequests = new AtomicInteger();
 
         @NonNull
         private final ContentResolver mContentResolver;
@@ -79,76 +219,595 @@ final class RxCursorLoaderFlowableFactory {
         final Scheduler mScheduler;
 
         @NonNull
-        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final LoaderStats mStats;
+
+        @Nullable
+        private final ChangeCoalescer mChangeCoalescer;
+
+        @Nullable
+        private final AdaptiveThrottle mAdaptiveThrottle;
+
+        private final boolean mPrefillWindow;
+
+        @Nullable
+        private final ChangeFilter mChangeFilter;
+
+        @Nullable
+        private final String mIdColumn;
+
+        private final boolean mSkipUnchanged;
+
+        @NonNull
+        private final ContentObserver mContentObserver;
+
+        @Nullable
+        private final PauseController mPauseController;
+
+        /**
+         * Set when a reload was requested while paused.
+         */
+        private final AtomicBoolean mDirty = new AtomicBoolean();
+
+        @Nullable
+        private final LoaderMetricsListener mMetricsListener;
+
+        @Nullable
+        private final ResultCache mResultCache;
+
+        /**
+         * Incremented when a notification invalidates the {@link #mResultCache}, so that a
+         * reload that started before it does not put its stale result back.
+         */
+        private final AtomicInteger mInvalidations = new AtomicInteger();
+
+        @Nullable
+        private final SnapshotStore mSnapshotStore;
+
+        private final boolean mDetachCursors;
+
+        /**
+         * Whether reloads wait for downstream demand.
+         */
+        private final boolean mDemandAware;
+
+        /**
+         * Outstanding downstream demand, tracked only if {@link #mDemandAware}.
+         */
+        final AtomicLong mRequested = new AtomicLong();
+
+        /**
+         * Set when a reload was requested without demand.
+         */
+        private final AtomicBoolean mAwaitingDemand = new AtomicBoolean();
 
-        private FlowableEmitter<Cursor> mEmitter;
+        @Nullable
+        private final ReloadScheduler mReloadScheduler;
+
+        private final int mReloadPriority;
+
+        private final long mSubscriptionId = SUBSCRIPTION_IDS.incrementAndGet();
+
+        private final AtomicLong mNotificationCount = new AtomicLong();
+
+        /**
+         * {@link System#nanoTime()} of the first notification since the last reload start, or
+         * zero if none.
+         */
+        private final AtomicLong mPendingNotificationTime = new AtomicLong();
+
+        /**
+         * Emitted cursors that were not seen closed yet, tracked only if
+         * {@link #mMetricsListener} is set.
+         */
+        private final List<Cursor> mLiveCursors = new ArrayList<>();
+
+        /**
+         * The emitter, or null when released.
+         */
+        private volatile FlowableEmitter<Cursor> mEmitter;
+
+        // Accessed only by the draining thread
+
+        private long mReloadCount;
+        private boolean mHasEmittedFingerprint;
+        private long mEmittedFingerprint;
+
+        /**
+         * The signal of the reload in progress, if any.
+         */
+        private volatile Object mCancellationSignal;
+
+        /**
+         * Ids of the last loaded {@link Cursor}, if {@link #mIdColumn} is set.
+         */
+        private volatile IdSet mLastLoadedIds;
 
         CursorLoaderOnSubscribe(
                 @NonNull final ContentResolver resolver,
                 @NonNull final RxCursorLoader.Query query,
-                @NonNull final Scheduler scheduler) {
+                @NonNull final Scheduler scheduler,
+                @NonNull final RxCursorLoader.Options options,
+                final boolean demandAware) {
             mContentResolver = resolver;
             mQuery = query;
             mScheduler = scheduler;
+            mStats = options.stats;
+            mPrefillWindow = options.prefillWindow;
+            mChangeFilter = options.changeFilter;
+            mIdColumn = options.idColumn;
+            mSkipUnchanged = options.skipUnchanged;
+            mContentObserver = new LoaderContentObserver(
+                    ObserverHandlers.get(options.observerDispatch));
+            mPauseController = options.pauseController;
+            mMetricsListener = options.metricsListener;
+            mResultCache = options.resultCache;
+            mSnapshotStore = options.snapshotStore;
+            mDetachCursors = options.detachCursors;
+            mDemandAware = demandAware;
+            mReloadScheduler = options.reloadScheduler;
+            mReloadPriority = options.reloadPriority;
+            mAdaptiveThrottle = options.isAdaptiveThrottlingEnabled()
+                    ? new AdaptiveThrottle(
+                    scheduler,
+                    mReloadScheduler != null ? mScheduleReloadRunnable : mReloadRunnable,
+                    options.stats,
+                    options.throttleMaxDutyCycle,
+                    options.throttleMaxIntervalMillis)
+                    : null;
+            mChangeCoalescer = mAdaptiveThrottle == null && options.isCoalescingEnabled()
+                    ? new ChangeCoalescer(
+                    scheduler,
+                    mReloadScheduler != null ? mScheduleReloadRunnable : mReloadRunnable,
+                    options.stats,
+                    options.coalesceQuietWindowMillis,
+                    options.coalesceMaxLatencyMillis)
+                    : null;
         }
 
         @Override
         public void subscribe(final FlowableEmitter<Cursor> emitter) {
-            synchronized (mEmitterLock) {
-                mEmitter = emitter;
+            mEmitter = emitter;
+            if (mResultCache != null || mSnapshotStore != null) {
+                // Before registering the observer, so that no reload can emit concurrently
+                emitCached(emitter);
             }
             mContentResolver.registerContentObserver(
                     mQuery.contentUri, true, mContentObserver);
-            reload();
+            if (mPauseController != null) {
+                mPauseController.addListener(mPauseListener);
+            }
+            if (mReloadScheduler != null) {
+                mReloadScheduler.schedule(
+                        mQuery.contentUri.getAuthority(), mLoadRunnable, mReloadPriority);
+            } else {
+                requestReload();
+            }
+        }
+
+        private void emitCached(@NonNull final FlowableEmitter<Cursor> emitter) {
+            CursorSnapshot snapshot = null;
+            if (mResultCache != null) {
+                snapshot = mResultCache.get(mQuery);
+                if (snapshot != null) {
+                    mStats.onCacheHit();
+                }
+            }
+            if (snapshot == null && mSnapshotStore != null) {
+                snapshot = mSnapshotStore.read(mQuery);
+                if (snapshot != null) {
+                    mStats.onSnapshotHit();
+                    if (mResultCache != null) {
+                        mResultCache.put(mQuery, snapshot);
+                    }
+                }
+            }
+            if (snapshot != null) {
+                final Cursor c = snapshot.newCursor();
+                if (mMetricsListener != null) {
+                    mLiveCursors.add(c);
+                }
+                emitter.onNext(c);
+            }
         }
 
         void release() {
             mContentResolver.unregisterContentObserver(mContentObserver);
-            synchronized (mEmitterLock) {
-                mEmitter = null;
+            if (mPauseController != null) {
+                mPauseController.removeListener(mPauseListener);
+            }
+            if (mChangeCoalescer != null) {
+                mChangeCoalescer.release();
+            }
+            if (mAdaptiveThrottle != null) {
+                mAdaptiveThrottle.release();
+            }
+            mEmitter = null;
+            ContentResolverCompat.cancel(mCancellationSignal);
+            if (mReloadScheduler != null) {
+                mReloadScheduler.cancel(mLoadRunnable);
+                mReloadScheduler.cancel(mReloadRunnable);
+            }
+        }
+
+        /**
+         * Runs {@link #mReloadRunnable} through the {@link ReloadScheduler}, if set, or on the
+         * loading {@link Scheduler} otherwise.
+         */
+        void scheduleReload() {
+            if (mReloadScheduler != null) {
+                mReloadScheduler.schedule(
+                        mQuery.contentUri.getAuthority(), mReloadRunnable, mReloadPriority);
+            } else {
+                mScheduler.scheduleDirect(mReloadRunnable);
+            }
+        }
+
+        /**
+         * Reloads on this thread, unless another thread is reloading, in which case that thread
+         * reloads once more after it finishes. Never blocks.
+         * <p>
+         * This must be called from the {@link #mScheduler} thread.
+         */
+        void requestReload() {
+            if (mReloadRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                if (mEmitter != null) {
+                    if (deferIfNoDemand()) {
+                        onReloadSkipped();
+                    } else {
+                        reload();
+                    }
+                }
+                missed = mReloadRequests.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * If demand aware and there is no demand, marks this loader as awaiting demand so that it
+         * reloads when demand arrives.
+         *
+         * @return true if there is no demand and the reload must not run now
+         */
+        private boolean deferIfNoDemand() {
+            if (!mDemandAware || mRequested.get() != 0) {
+                return false;
+            }
+            mAwaitingDemand.set(true);
+            if (mRequested.get() != 0 && mAwaitingDemand.getAndSet(false)) {
+                // Requested in between and the request did not see the flag
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Reports a reload that was deferred instead of running, for the throttle that may
+         * have requested it.
+         */
+        private void onReloadSkipped() {
+            if (mAdaptiveThrottle != null) {
+                mAdaptiveThrottle.onReloadSkipped();
             }
         }
 
         /**
          * Loads new {@link Cursor}.
          * <p>
-         * This must be called from {@link #subscribe(FlowableEmitter)} thread
+         * This must be called only from {@link #requestReload()}.
          */
-        synchronized void reload() {
+        private void reload() {
             if (isDebugLoggingEnabled()) {
                 Log.d(TAG, mQuery.toString());
             }
 
-            final Cursor c = mContentResolver.query(
-                    mQuery.contentUri,
-                    mQuery.projection,
-                    mQuery.selection,
-                    mQuery.selectionArgs,
-                    mQuery.sortOrder);
+            final Object cancellationSignal = ContentResolverCompat.newCancellationSignal();
+            mCancellationSignal = cancellationSignal;
+            if (mEmitter == null) {
+                // Released before the signal was published
+                ContentResolverCompat.cancel(cancellationSignal);
+            }
+
+            mStats.onReload();
+            mReloadCount++;
+            if (mAdaptiveThrottle != null) {
+                mAdaptiveThrottle.onReloadStarted();
+            }
+            final long notificationTime = mPendingNotificationTime.getAndSet(0);
+            final int invalidations = mInvalidations.get();
+
+            Cursor c = null;
+            IdSet ids = null;
+            CursorSnapshot snapshot = null;
+            long fingerprint = 0;
+            long queryTime = 0;
+            long fillTime = 0;
+            RuntimeException error = null;
+            try {
+                final long queryStart = System.nanoTime();
+                c = ContentResolverCompat.query(mContentResolver, mQuery, cancellationSignal);
+                queryTime = System.nanoTime() - queryStart;
+                if (c != null && mPrefillWindow) {
+                    fillTime = prefillWindow(c);
+                }
+                if (c != null && mIdColumn != null) {
+                    ids = IdSet.read(c, c.getColumnIndexOrThrow(mIdColumn));
+                }
+                if (c != null && mSkipUnchanged) {
+                    fingerprint = CursorHashing.hashCursor(c);
+                }
+                if (c != null
+                        && (mResultCache != null || mSnapshotStore != null || mDetachCursors)) {
+                    snapshot = CursorSnapshot.copyOf(c);
+                }
+                if (snapshot != null && mDetachCursors) {
+                    c.close();
+                    c = snapshot.newCursor();
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                mCancellationSignal = null;
+            }
+
+            // The count is cached by the window fill, so this does not query again
+            final int rowCount = mMetricsListener != null
+                    && c != null && error == null && mPrefillWindow
+                    ? c.getCount()
+                    : -1;
+
+            if (mAdaptiveThrottle != null) {
+                mAdaptiveThrottle.onReloadFinished(queryTime + fillTime);
+            }
+
+            final boolean emitted;
+            if (ContentResolverCompat.isCanceled(cancellationSignal)) {
+                // Superseded by a newer reload or released
+                if (c != null) {
+                    c.close();
+                }
+                if (notificationTime != 0) {
+                    // Let the superseding reload report latency from the same notification
+                    mPendingNotificationTime.compareAndSet(0, notificationTime);
+                }
+                emitted = false;
+            } else {
+                emitted = emit(c, ids, snapshot, fingerprint, error, invalidations);
+            }
+
+            if (mMetricsListener != null) {
+                mMetricsListener.onReload(new ReloadMetrics(
+                        mQuery,
+                        mSubscriptionId,
+                        mReloadCount,
+                        queryTime,
+                        fillTime,
+                        rowCount,
+                        mNotificationCount.get(),
+                        getCoalescedCount(),
+                        emitted && notificationTime != 0
+                                ? System.nanoTime() - notificationTime
+                                : -1,
+                        countLiveCursors(),
+                        emitted));
+            }
+        }
 
-            synchronized (mEmitterLock) {
-                if (mEmitter != null && !mEmitter.isCancelled()) {
+        /**
+         * Emits the result, unless released or the result is unchanged. Closes the
+         * {@link Cursor} if not emitted.
+         *
+         * @param invalidations the value of {@link #mInvalidations} when the reload started
+         * @return true if emitted
+         */
+        private boolean emit(
+                @Nullable final Cursor c,
+                @Nullable final IdSet ids,
+                @Nullable final CursorSnapshot snapshot,
+                final long fingerprint,
+                @Nullable final RuntimeException error,
+                final int invalidations) {
+            final FlowableEmitter<Cursor> emitter = mEmitter;
+            if (emitter != null && !emitter.isCancelled()) {
+                if (c != null && error == null && mSkipUnchanged) {
+                    if (mHasEmittedFingerprint && fingerprint == mEmittedFingerprint) {
+                        mStats.onUnchangedResult();
+                        c.close();
+                        return false;
+                    }
+                    mHasEmittedFingerprint = true;
+                    mEmittedFingerprint = fingerprint;
+                }
+                if (ids != null) {
+                    mLastLoadedIds = ids;
+                }
+                if (snapshot != null && error == null && mResultCache != null
+                        && mInvalidations.get() == invalidations) {
+                    mResultCache.put(mQuery, snapshot);
+                    if (mInvalidations.get() != invalidations) {
+                        // Invalidated between the check and the put
+                        mResultCache.invalidate(mQuery);
+                    }
+                }
+                if (error != null) {
                     if (c != null) {
-                        mEmitter.onNext(c);
-                    } else {
-                        mEmitter.onError(new QueryReturnedNullException());
+                        c.close();
+                    }
+                    emitter.onError(error);
+                } else if (c != null) {
+                    if (mMetricsListener != null) {
+                        mLiveCursors.add(c);
                     }
+                    // Not serialized with release(), which only takes effect for the next
+                    // emission, so that disposal never waits for delivery
+                    emitter.onNext(c);
+                    if (snapshot != null && mSnapshotStore != null) {
+                        // After emitting, so that the write does not delay delivery
+                        mSnapshotStore.write(mQuery, snapshot);
+                    }
+                } else {
+                    emitter.onError(new QueryReturnedNullException());
                 }
+                return true;
+            }
+
+            // Released, nobody is going to receive it
+            if (c != null) {
+                c.close();
+            }
+            return false;
+        }
+
+        private long getCoalescedCount() {
+            if (mChangeCoalescer != null) {
+                return mChangeCoalescer.getCoalescedCount();
+            }
+            if (mAdaptiveThrottle != null) {
+                return mAdaptiveThrottle.getCoalescedCount();
+            }
+            return 0;
+        }
+
+        /**
+         * Forgets closed cursors.
+         *
+         * @return the number of emitted cursors that are not closed yet
+         */
+        private int countLiveCursors() {
+            final Iterator<Cursor> iterator = mLiveCursors.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isClosed()) {
+                    iterator.remove();
+                }
+            }
+            return mLiveCursors.size();
+        }
+
+        /**
+         * Forces the {@link Cursor} to fill its window on this thread, like
+         * {@link android.content.CursorLoader} does, so that the consumer does not do it when
+         * first accessing the {@link Cursor}.
+         *
+         * @return the time spent in nanoseconds
+         */
+        private long prefillWindow(@NonNull final Cursor c) {
+            final long start = System.nanoTime();
+            c.getCount();
+            final long fillTime = System.nanoTime() - start;
+            mStats.onWindowFilled(fillTime);
+            if (isDebugLoggingEnabled()) {
+                Log.d(TAG, "Window filled in " + fillTime / 1000L + " us");
             }
+            return fillTime;
         }
 
-        private final ContentObserver mContentObserver = new ContentObserver(mHandler) {
+        private final class LoaderContentObserver extends ContentObserver {
+
+            LoaderContentObserver(@Nullable final Handler handler) {
+                super(handler);
+            }
 
             @Override
             public void onChange(final boolean selfChange) {
-                mScheduler.scheduleDirect(mReloadRunnable);
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(final boolean selfChange, @Nullable final Uri uri) {
+                mStats.onNotification();
+                mNotificationCount.incrementAndGet();
+                mPendingNotificationTime.compareAndSet(0, System.nanoTime());
+                if (mChangeFilter != null
+                        && !mChangeFilter.isRelevant(mQuery, uri, mLastLoadedIds)) {
+                    mStats.onReloadSkipped();
+                    return;
+                }
+                if (mResultCache != null) {
+                    // Before invalidating, so that a running reload sees it after putting
+                    mInvalidations.incrementAndGet();
+                    mResultCache.invalidate(mQuery);
+                }
+                if (deferIfPaused()) {
+                    return;
+                }
+                if (mAdaptiveThrottle != null) {
+                    mAdaptiveThrottle.onNotification();
+                } else if (mChangeCoalescer != null) {
+                    mChangeCoalescer.onNotification();
+                } else {
+                    scheduleReload();
+                }
+            }
+        }
+
+        /**
+         * If paused, marks this loader dirty so that it reloads on resume.
+         *
+         * @return true if paused and the reload must not run now
+         */
+        boolean deferIfPaused() {
+            if (mPauseController == null || !mPauseController.isPaused()) {
+                return false;
+            }
+            mDirty.set(true);
+            if (!mPauseController.isPaused() && mDirty.getAndSet(false)) {
+                // Resumed in between and the resume did not see the dirty flag
+                return false;
+            }
+            return true;
+        }
+
+        private final PauseController.Listener mPauseListener = new PauseController.Listener() {
+
+            @Override
+            public void onResumed() {
+                if (mDirty.getAndSet(false)) {
+                    scheduleReload();
+                }
             }
         };
 
         final Runnable mReloadRunnable = new Runnable() {
             @Override
             public void run() {
-                reload();
+                if (deferIfPaused()) {
+                    onReloadSkipped();
+                    return;
+                }
+                // The content has changed, so the result of a reload in progress is outdated
+                ContentResolverCompat.cancel(mCancellationSignal);
+                requestReload();
+            }
+        };
+
+        final Runnable mRequestRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (mAwaitingDemand.getAndSet(false)) {
+                    scheduleReload();
+                }
+            }
+        };
+
+        /**
+         * The first load, when run through the {@link ReloadScheduler}.
+         */
+        private final Runnable mLoadRunnable = new Runnable() {
+            @Override
+            public void run() {
+                requestReload();
+            }
+        };
+
+        private final Runnable mScheduleReloadRunnable = new Runnable() {
+            @Override
+            public void run() {
+                scheduleReload();
             }
         };
     }
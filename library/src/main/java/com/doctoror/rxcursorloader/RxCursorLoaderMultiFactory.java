@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+
+import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
+import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
+
+final class RxCursorLoaderMultiFactory {
+
+    private RxCursorLoaderMultiFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    static Flowable<MultiCursorResult> create(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<RxCursorLoader.Query> queries,
+            @NonNull final Scheduler scheduler,
+            @NonNull final BackpressureStrategy backpressureStrategy,
+            @NonNull final RxCursorLoader.Options options) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (queries == null) {
+            throw new NullPointerException("Queries must not be null");
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("Queries must not be empty");
+        }
+        for (final RxCursorLoader.Query query : queries) {
+            //noinspection ConstantConditions
+            if (query == null) {
+                throw new NullPointerException("Query must not be null");
+            }
+        }
+        //noinspection ConstantConditions
+        if (backpressureStrategy == null) {
+            throw new NullPointerException("BackpressureStrategy must not be null");
+        }
+        //noinspection ConstantConditions
+        if (options == null) {
+            throw new NullPointerException("Options must not be null");
+        }
+
+        final RxCursorLoader.Query[] queriesCopy = queries.toArray(
+                new RxCursorLoader.Query[queries.size()]);
+
+        final MultiQueryOnSubscribe onSubscribe = new MultiQueryOnSubscribe(
+                resolver, queriesCopy, scheduler, options);
+
+        // Backpressure is applied by the operator, so that no result is dropped silently
+        return Flowable
+                .create(onSubscribe, BackpressureStrategy.MISSING)
+                .subscribeOn(scheduler)
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        onSubscribe.release();
+                    }
+                })
+                .lift(new MultiCursorResultOperator(backpressureStrategy));
+    }
+
+    private static final class MultiQueryOnSubscribe
+            implements FlowableOnSubscribe<MultiCursorResult> {
+
+        @NonNull
+        private final ContentResolver mContentResolver;
+
+        @NonNull
+        private final RxCursorLoader.Query[] mQueries;
+
+        @NonNull
+        private final Scheduler mScheduler;
+
+        @NonNull
+        private final LoaderStats mStats;
+
+        @Nullable
+        private final ChangeCoalescer mChangeCoalescer;
+
+        private final boolean mPrefillWindow;
+
+        @Nullable
+        private final ReloadScheduler mReloadScheduler;
+
+        private final int mReloadPriority;
+
+        @NonNull
+        private final MemberContentObserver[] mContentObservers;
+
+        /**
+         * Non-zero for queries that must be reloaded by the next pass.
+         */
+        @NonNull
+        private final AtomicIntegerArray mDirty;
+
+        /**
+         * The number of reload requests not served yet, drained like in
+         * {@link RxCursorLoaderFlowableFactory}.
+         */
+        private final AtomicInteger mReloadRequests = new AtomicInteger();
+
+        /**
+         * The emitter, or null when released.
+         */
+        private volatile FlowableEmitter<MultiCursorResult> mEmitter;
+
+        /**
+         * The signal of the query in progress, if any.
+         */
+        private volatile Object mCancellationSignal;
+
+        /**
+         * Cursors of the last emitted result, which {@link MultiCursorResultOperator} delivers
+         * or merges into the next one. Accessed only by the draining thread.
+         */
+        private Cursor[] mCursors;
+
+        MultiQueryOnSubscribe(
+                @NonNull final ContentResolver resolver,
+                @NonNull final RxCursorLoader.Query[] queries,
+                @NonNull final Scheduler scheduler,
+                @NonNull final RxCursorLoader.Options options) {
+            mContentResolver = resolver;
+            mQueries = queries;
+            mScheduler = scheduler;
+            mStats = options.stats;
+            mPrefillWindow = options.prefillWindow;
+            mReloadScheduler = options.reloadScheduler;
+            mReloadPriority = options.reloadPriority;
+            mDirty = new AtomicIntegerArray(queries.length);
+
+            final Handler handler = ObserverHandlers.get(options.observerDispatch);
+            mContentObservers = new MemberContentObserver[queries.length];
+            for (int i = 0; i < queries.length; i++) {
+                mContentObservers[i] = new MemberContentObserver(handler, i);
+            }
+
+            mChangeCoalescer = options.isCoalescingEnabled()
+                    ? new ChangeCoalescer(
+                    scheduler,
+                    mReloadScheduler != null ? mScheduleReloadRunnable : mReloadRunnable,
+                    options.stats,
+                    options.coalesceQuietWindowMillis,
+                    options.coalesceMaxLatencyMillis)
+                    : null;
+        }
+
+        @Override
+        public void subscribe(final FlowableEmitter<MultiCursorResult> emitter) {
+            mEmitter = emitter;
+            for (int i = 0; i < mQueries.length; i++) {
+                mDirty.set(i, 1);
+                mContentResolver.registerContentObserver(
+                        mQueries[i].contentUri, true, mContentObservers[i]);
+            }
+            if (mReloadScheduler != null) {
+                scheduleReload();
+            } else {
+                requestReload();
+            }
+        }
+
+        void release() {
+            for (final ContentObserver observer : mContentObservers) {
+                mContentResolver.unregisterContentObserver(observer);
+            }
+            if (mChangeCoalescer != null) {
+                mChangeCoalescer.release();
+            }
+            mEmitter = null;
+            ContentResolverCompat.cancel(mCancellationSignal);
+            if (mReloadScheduler != null) {
+                mReloadScheduler.cancel(mReloadRunnable);
+            }
+        }
+
+        /**
+         * Runs {@link #mReloadRunnable} through the {@link ReloadScheduler}, if set, limited by
+         * the authority of the first query, or on the loading {@link Scheduler} otherwise.
+         */
+        void scheduleReload() {
+            if (mReloadScheduler != null) {
+                mReloadScheduler.schedule(
+                        mQueries[0].contentUri.getAuthority(), mReloadRunnable, mReloadPriority);
+            } else {
+                mScheduler.scheduleDirect(mReloadRunnable);
+            }
+        }
+
+        /**
+         * Runs a reload pass on this thread, unless another thread is running one, in which
+         * case that thread runs one more pass after it finishes. Never blocks.
+         */
+        void requestReload() {
+            if (mReloadRequests.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            for (; ; ) {
+                if (mEmitter != null) {
+                    reloadDirty();
+                }
+                missed = mReloadRequests.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Reloads all dirty queries and emits the result if at least one was reloaded.
+         * <p>
+         * This must be called only from {@link #requestReload()}.
+         */
+        private void reloadDirty() {
+            final int count = mQueries.length;
+            final Cursor[] cursors = new Cursor[count];
+            final boolean[] changed = new boolean[count];
+            boolean anyChanged = false;
+
+            Throwable error = null;
+            for (int i = 0; i < count && error == null; i++) {
+                if (mDirty.getAndSet(i, 0) == 0) {
+                    cursors[i] = mCursors[i];
+                    continue;
+                }
+                try {
+                    final Cursor c = load(mQueries[i]);
+                    if (c == null) {
+                        error = new QueryReturnedNullException();
+                    } else {
+                        cursors[i] = c;
+                        changed[i] = true;
+                        anyChanged = true;
+                    }
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+            }
+
+            final FlowableEmitter<MultiCursorResult> emitter = mEmitter;
+            if (error != null || emitter == null || emitter.isCancelled()) {
+                MultiCursorResultOperator.closeChanged(new MultiCursorResult(cursors, changed));
+                if (error != null && emitter != null && !emitter.isCancelled()) {
+                    emitter.onError(error);
+                }
+                return;
+            }
+
+            if (anyChanged) {
+                mCursors = cursors;
+                emitter.onNext(new MultiCursorResult(cursors, changed));
+            }
+        }
+
+        /**
+         * @return the {@link Cursor}, or null if the provider returned null
+         * @throws RuntimeException if the query failed or was cancelled
+         */
+        @Nullable
+        private Cursor load(@NonNull final RxCursorLoader.Query query) {
+            if (isDebugLoggingEnabled()) {
+                Log.d(TAG, query.toString());
+            }
+
+            final Object cancellationSignal = ContentResolverCompat.newCancellationSignal();
+            mCancellationSignal = cancellationSignal;
+            if (mEmitter == null) {
+                // Released before the signal was published
+                ContentResolverCompat.cancel(cancellationSignal);
+            }
+
+            mStats.onReload();
+            try {
+                final Cursor c = ContentResolverCompat.query(
+                        mContentResolver, query, cancellationSignal);
+                if (c != null && mPrefillWindow) {
+                    try {
+                        prefillWindow(c);
+                    } catch (RuntimeException e) {
+                        c.close();
+                        throw e;
+                    }
+                }
+                return c;
+            } finally {
+                mCancellationSignal = null;
+            }
+        }
+
+        private void prefillWindow(@NonNull final Cursor c) {
+            final long start = System.nanoTime();
+            c.getCount();
+            mStats.onWindowFilled(System.nanoTime() - start);
+        }
+
+        private final class MemberContentObserver extends ContentObserver {
+
+            private final int mIndex;
+
+            MemberContentObserver(@Nullable final Handler handler, final int index) {
+                super(handler);
+                mIndex = index;
+            }
+
+            @Override
+            public void onChange(final boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(final boolean selfChange, @Nullable final Uri uri) {
+                mStats.onNotification();
+                mDirty.set(mIndex, 1);
+                if (mChangeCoalescer != null) {
+                    mChangeCoalescer.onNotification();
+                } else {
+                    scheduleReload();
+                }
+            }
+        }
+
+        private final Runnable mReloadRunnable = new Runnable() {
+            @Override
+            public void run() {
+                requestReload();
+            }
+        };
+
+        private final Runnable mScheduleReloadRunnable = new Runnable() {
+            @Override
+            public void run() {
+                scheduleReload();
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.util.Log;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.BiFunction;
+
+import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
+import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
+
+final class RxCursorLoaderPagedFactory {
+
+    private RxCursorLoaderPagedFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    static Flowable<Cursor> create(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.PagedQuery pagedQuery,
+            @NonNull final Scheduler scheduler) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (pagedQuery == null) {
+            throw new NullPointerException("PagedQuery must not be null");
+        }
+
+        return Flowable
+                .defer(new Callable<Publisher<Cursor>>() {
+
+                    @Override
+                    public Publisher<Cursor> call() {
+                        final PageLoader loader = new PageLoader(resolver, pagedQuery);
+                        return Flowable
+                                .generate(loader.mInitialState, loader)
+                                .doOnCancel(loader);
+                    }
+                })
+                .subscribeOn(scheduler);
+    }
+
+    /**
+     * Loads a page for every request. The state is the offset of the next page.
+     */
+    private static final class PageLoader
+            implements BiFunction<Integer, Emitter<Cursor>, Integer>, Action {
+
+        @NonNull
+        private final ContentResolver mContentResolver;
+
+        @NonNull
+        private final RxCursorLoader.Query mQuery;
+
+        private final int mPageSize;
+
+        /**
+         * Becomes false once the provider ignored limit and offset query arguments.
+         */
+        private boolean mUseQueryArgs = ContentResolverCompat.isQueryArgsSupported();
+
+        private volatile Object mCancellationSignal;
+        private volatile boolean mCancelled;
+
+        final Callable<Integer> mInitialState = new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return 0;
+            }
+        };
+
+        PageLoader(
+                @NonNull final ContentResolver resolver,
+                @NonNull final RxCursorLoader.PagedQuery pagedQuery) {
+            mContentResolver = resolver;
+            mQuery = pagedQuery.query;
+            mPageSize = pagedQuery.pageSize;
+        }
+
+        @Override
+        public Integer apply(final Integer offset, final Emitter<Cursor> emitter) {
+            if (isDebugLoggingEnabled()) {
+                Log.d(TAG, mQuery.toString() + ", offset = " + offset);
+            }
+
+            final Object cancellationSignal = ContentResolverCompat.newCancellationSignal();
+            mCancellationSignal = cancellationSignal;
+            if (mCancelled) {
+                return offset;
+            }
+
+            final Cursor c;
+            try {
+                c = queryPage(offset, cancellationSignal);
+                if (c != null) {
+                    c.getCount();
+                }
+            } catch (RuntimeException e) {
+                if (!ContentResolverCompat.isCanceled(cancellationSignal)) {
+                    emitter.onError(e);
+                }
+                return offset;
+            } finally {
+                mCancellationSignal = null;
+            }
+
+            if (ContentResolverCompat.isCanceled(cancellationSignal)) {
+                if (c != null) {
+                    c.close();
+                }
+                return offset;
+            }
+
+            if (c == null) {
+                emitter.onError(new QueryReturnedNullException());
+                return offset;
+            }
+
+            final int count = c.getCount();
+            emitter.onNext(c);
+            if (count < mPageSize) {
+                emitter.onComplete();
+            }
+            return offset + count;
+        }
+
+        @Nullable
+        private Cursor queryPage(final int offset, @Nullable final Object cancellationSignal) {
+            if (mUseQueryArgs) {
+                final Cursor c = ContentResolverCompat.queryPageWithArgs(
+                        mContentResolver, mQuery, mPageSize, offset, cancellationSignal);
+                if (c == null || ContentResolverCompat.areLimitAndOffsetHonored(c)) {
+                    return c;
+                }
+                c.close();
+                mUseQueryArgs = false;
+            }
+            return ContentResolverCompat.queryPageWithSortOrder(
+                    mContentResolver, mQuery, mPageSize, offset, cancellationSignal);
+        }
+
+        /**
+         * Called on cancel. Cancels the page query in progress, if any.
+         */
+        @Override
+        public void run() {
+            mCancelled = true;
+            ContentResolverCompat.cancel(mCancellationSignal);
+        }
+    }
+}
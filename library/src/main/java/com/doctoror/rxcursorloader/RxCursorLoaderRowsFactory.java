@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+import org.reactivestreams.Publisher;
+
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.BiConsumer;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+final class RxCursorLoaderRowsFactory {
+
+    private RxCursorLoaderRowsFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @NonNull
+    static <T> Flowable<T> create(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final Scheduler scheduler,
+            @NonNull final RowMapper<T> mapper) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (query == null) {
+            throw new NullPointerException("Query must not be null");
+        }
+        //noinspection ConstantConditions
+        if (mapper == null) {
+            throw new NullPointerException("RowMapper must not be null");
+        }
+
+        return new CursorQuerySingle(resolver, query)
+                .flatMapPublisher(new Function<Cursor, Publisher<T>>() {
+
+                    @Override
+                    public Publisher<T> apply(final Cursor c) {
+                        final int[] columnIndices;
+                        try {
+                            columnIndices = resolveColumnIndices(c, query.projection);
+                        } catch (RuntimeException e) {
+                            c.close();
+                            throw e;
+                        }
+                        final RowGenerator<T> generator
+                                = new RowGenerator<>(c, columnIndices, mapper);
+                        return Flowable.generate(generator, generator, generator);
+                    }
+                })
+                .subscribeOn(scheduler);
+    }
+
+    /**
+     * Maps a row of the loaded {@link Cursor} for every request, and closes the {@link Cursor}
+     * when done or cancelled.
+     * <p>
+     * Implements all callbacks to avoid allocating one object per callback.
+     */
+    private static final class RowGenerator<T> implements
+            Callable<Cursor>,
+            BiConsumer<Cursor, Emitter<T>>,
+            Consumer<Cursor> {
+
+        @NonNull
+        private final Cursor mCursor;
+
+        @NonNull
+        private final int[] mColumnIndices;
+
+        @NonNull
+        private final RowMapper<T> mMapper;
+
+        RowGenerator(
+                @NonNull final Cursor cursor,
+                @NonNull final int[] columnIndices,
+                @NonNull final RowMapper<T> mapper) {
+            mCursor = cursor;
+            mColumnIndices = columnIndices;
+            mMapper = mapper;
+        }
+
+        /**
+         * Initial state
+         */
+        @Override
+        public Cursor call() {
+            return mCursor;
+        }
+
+        /**
+         * Generator
+         */
+        @Override
+        public void accept(final Cursor c, final Emitter<T> emitter) {
+            if (c.moveToNext()) {
+                emitter.onNext(mMapper.map(c, mColumnIndices));
+            } else {
+                emitter.onComplete();
+            }
+        }
+
+        /**
+         * Dispose state
+         */
+        @Override
+        public void accept(final Cursor c) {
+            c.close();
+        }
+    }
+
+    @NonNull
+    static int[] resolveColumnIndices(
+            @NonNull final Cursor c,
+            final String[] projection) {
+        final int[] indices;
+        if (projection != null) {
+            indices = new int[projection.length];
+            for (int i = 0; i < projection.length; i++) {
+                indices[i] = c.getColumnIndexOrThrow(projection[i]);
+            }
+        } else {
+            indices = new int[c.getColumnCount()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = i;
+            }
+        }
+        return indices;
+    }
+}
@@ -17,18 +17,39 @@ package com.doctoror.rxcursorloader;
 
 import android.content.ContentResolver;
 import android.database.Cursor;
-import android.util.Log;
+
+import org.reactivestreams.Publisher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.SingleEmitter;
-import io.reactivex.SingleOnSubscribe;
-
-import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
-import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
 
 final class RxCursorLoaderSingleFactory {
 
+    private static final Comparator<QueryResult> BY_INDEX = new Comparator<QueryResult>() {
+
+        @Override
+        public int compare(final QueryResult a, final QueryResult b) {
+            return a.getIndex() < b.getIndex() ? -1 : (a.getIndex() == b.getIndex() ? 0 : 1);
+        }
+    };
+
     @NonNull
     static Single<Cursor> single(
             @NonNull final ContentResolver resolver,
@@ -42,42 +63,243 @@ final class RxCursorLoaderSingleFactory {
             throw new NullPointerException("Params param must not be null");
         }
 
-        return Single.create(new CursorLoaderOnSubscribeSingle(resolver, query));
+        return new CursorQuerySingle(resolver, query);
+    }
+
+    @NonNull
+    static Flowable<QueryResult> singles(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<RxCursorLoader.Query> queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        final RxCursorLoader.Query[] queriesCopy = checkArguments(
+                resolver, queries, parallelism, timeout, unit, scheduler);
+
+        return Flowable.defer(new Callable<Publisher<QueryResult>>() {
+
+            @Override
+            public Publisher<QueryResult> call() {
+                final UndeliveredResults undelivered = new UndeliveredResults();
+                return loadAll(resolver, queriesCopy, parallelism, timeout, unit, scheduler,
+                        undelivered)
+                        .doOnNext(new Consumer<QueryResult>() {
+
+                            @Override
+                            public void accept(final QueryResult result) {
+                                undelivered.remove(result);
+                            }
+                        })
+                        .doFinally(undelivered);
+            }
+        });
     }
 
-    private static final class CursorLoaderOnSubscribeSingle
-            implements SingleOnSubscribe<Cursor> {
+    @NonNull
+    static Single<List<QueryResult>> singlesAll(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<RxCursorLoader.Query> queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        final RxCursorLoader.Query[] queriesCopy = checkArguments(
+                resolver, queries, parallelism, timeout, unit, scheduler);
 
-        @NonNull
-        private final ContentResolver mContentResolver;
+        return Single.defer(new Callable<SingleSource<List<QueryResult>>>() {
 
-        @NonNull
-        private final RxCursorLoader.Query mQuery;
+            @Override
+            public SingleSource<List<QueryResult>> call() {
+                final UndeliveredResults undelivered = new UndeliveredResults();
+                return loadAll(resolver, queriesCopy, parallelism, timeout, unit, scheduler,
+                        undelivered)
+                        .toSortedList(BY_INDEX, Math.max(1, queriesCopy.length))
+                        .doOnSuccess(new Consumer<List<QueryResult>>() {
 
-        CursorLoaderOnSubscribeSingle(
-                @NonNull final ContentResolver resolver,
-                @NonNull final RxCursorLoader.Query query) {
-            mContentResolver = resolver;
-            mQuery = query;
+                            @Override
+                            public void accept(final List<QueryResult> results) {
+                                undelivered.clear();
+                            }
+                        })
+                        .doFinally(undelivered);
+            }
+        });
+    }
+
+    @NonNull
+    private static RxCursorLoader.Query[] checkArguments(
+            @NonNull final ContentResolver resolver,
+            @NonNull final List<RxCursorLoader.Query> queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        //noinspection ConstantConditions
+        if (resolver == null) {
+            throw new NullPointerException("ContentResolver must not be null");
+        }
+        //noinspection ConstantConditions
+        if (queries == null) {
+            throw new NullPointerException("Queries must not be null");
+        }
+        for (final RxCursorLoader.Query query : queries) {
+            //noinspection ConstantConditions
+            if (query == null) {
+                throw new NullPointerException("Query must not be null");
+            }
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+        //noinspection ConstantConditions
+        if (unit == null) {
+            throw new NullPointerException("TimeUnit must not be null");
+        }
+        //noinspection ConstantConditions
+        if (scheduler == null) {
+            throw new NullPointerException("Scheduler must not be null");
         }
 
+        return queries.toArray(new RxCursorLoader.Query[queries.size()]);
+    }
+
+    @NonNull
+    private static Flowable<QueryResult> loadAll(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query[] queries,
+            final int parallelism,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler,
+            @NonNull final UndeliveredResults undelivered) {
+        return Flowable
+                .fromIterable(interleaveByAuthority(queries))
+                .flatMap(new Function<Integer, Publisher<QueryResult>>() {
+
+                    @Override
+                    public Publisher<QueryResult> apply(final Integer index) {
+                        return load(resolver, queries[index], index, timeout, unit, scheduler)
+                                .doOnSuccess(undelivered)
+                                .toFlowable();
+                    }
+                }, false, parallelism);
+    }
+
+    @NonNull
+    private static Single<QueryResult> load(
+            @NonNull final ContentResolver resolver,
+            @NonNull final RxCursorLoader.Query query,
+            final int index,
+            final long timeout,
+            @NonNull final TimeUnit unit,
+            @NonNull final Scheduler scheduler) {
+        Single<Cursor> single = new CursorQuerySingle(resolver, query)
+                .subscribeOn(scheduler);
+        if (timeout != 0) {
+            // Disposing cancels the query
+            single = single.timeout(timeout, unit, scheduler);
+        }
+        return single
+                .map(new Function<Cursor, QueryResult>() {
+
+                    @Override
+                    public QueryResult apply(final Cursor c) {
+                        return new QueryResult(index, query, c, null);
+                    }
+                })
+                .onErrorReturn(new Function<Throwable, QueryResult>() {
+
+                    @Override
+                    public QueryResult apply(final Throwable e) {
+                        return new QueryResult(index, query, null, e);
+                    }
+                });
+    }
+
+    /**
+     * Orders the queries so that consecutive ones go to different authorities where possible,
+     * so that a slow provider does not take all parallel slots while others wait.
+     *
+     * @return the indices of the queries in the order to run
+     */
+    @NonNull
+    private static List<Integer> interleaveByAuthority(
+            @NonNull final RxCursorLoader.Query[] queries) {
+        final Map<String, ArrayDeque<Integer>> byAuthority = new LinkedHashMap<>();
+        for (int i = 0; i < queries.length; i++) {
+            final String authority = queries[i].contentUri.getAuthority();
+            ArrayDeque<Integer> group = byAuthority.get(authority);
+            if (group == null) {
+                group = new ArrayDeque<>();
+                byAuthority.put(authority, group);
+            }
+            group.add(i);
+        }
+
+        final List<Integer> order = new ArrayList<>(queries.length);
+        while (order.size() < queries.length) {
+            for (final ArrayDeque<Integer> group : byAuthority.values()) {
+                final Integer index = group.poll();
+                if (index != null) {
+                    order.add(index);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Tracks the loaded results that have not reached the consumer yet, and closes their
+     * {@link Cursor}s when the stream terminates or is cancelled before delivering them.
+     * Results loaded after that are closed immediately.
+     */
+    private static final class UndeliveredResults implements Consumer<QueryResult>, Action {
+
+        private final Set<QueryResult> mResults = new HashSet<>();
+
+        private boolean mFinished;
+
         @Override
-        public void subscribe(final SingleEmitter<Cursor> emitter) {
-            if (isDebugLoggingEnabled()) {
-                Log.d(TAG, mQuery.toString());
+        public void accept(final QueryResult result) {
+            if (result.getCursor() == null) {
+                return;
             }
+            synchronized (mResults) {
+                if (!mFinished) {
+                    mResults.add(result);
+                    return;
+                }
+            }
+            result.getCursor().close();
+        }
 
-            final Cursor c = mContentResolver.query(
-                    mQuery.contentUri,
-                    mQuery.projection,
-                    mQuery.selection,
-                    mQuery.selectionArgs,
-                    mQuery.sortOrder);
-
-            if (c != null) {
-                emitter.onSuccess(c);
-            } else {
-                emitter.onError(new QueryReturnedNullException());
+        void remove(@NonNull final QueryResult result) {
+            synchronized (mResults) {
+                mResults.remove(result);
+            }
+        }
+
+        void clear() {
+            synchronized (mResults) {
+                mResults.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            final List<QueryResult> results;
+            synchronized (mResults) {
+                mFinished = true;
+                results = new ArrayList<>(mResults);
+                mResults.clear();
+            }
+            for (final QueryResult result : results) {
+                //noinspection ConstantConditions
+                result.getCursor().close();
             }
         }
     }
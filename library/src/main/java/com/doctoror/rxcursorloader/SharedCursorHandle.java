@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.annotation.TargetApi;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.DataSetObserver;
+import android.os.Build;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A handle to a {@link RefCountedCursor}.
+ * <p>
+ * Every handle has its own position, so consumers sharing the same {@link Cursor} do not
+ * interfere with each other. Closing a handle releases its reference instead of closing the
+ * shared {@link Cursor}.
+ */
+final class SharedCursorHandle extends CursorWrapper {
+
+    private final AtomicBoolean mClosed = new AtomicBoolean();
+
+    @NonNull
+    private final RefCountedCursor mOwner;
+
+    @NonNull
+    private final Cursor mCursor;
+
+    private int mPosition = -1;
+
+    /**
+     * Observers registered through this handle, guarded by the shared {@link Cursor}, so that
+     * closing the handle unregisters them.
+     */
+    private final List<ContentObserver> mContentObservers = new ArrayList<>(1);
+    private final List<DataSetObserver> mDataSetObservers = new ArrayList<>(1);
+
+    SharedCursorHandle(@NonNull final RefCountedCursor owner, @NonNull final Cursor cursor) {
+        super(cursor);
+        mOwner = owner;
+        mCursor = cursor;
+    }
+
+    @Override
+    public void close() {
+        if (mClosed.compareAndSet(false, true)) {
+            synchronized (mCursor) {
+                for (final ContentObserver observer : mContentObservers) {
+                    mCursor.unregisterContentObserver(observer);
+                }
+                mContentObservers.clear();
+                for (final DataSetObserver observer : mDataSetObservers) {
+                    mCursor.unregisterDataSetObserver(observer);
+                }
+                mDataSetObservers.clear();
+            }
+            mOwner.release();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return mClosed.get() || mCursor.isClosed();
+    }
+
+    @Override
+    public int getPosition() {
+        return mPosition;
+    }
+
+    @Override
+    public boolean move(final int offset) {
+        return moveToPosition(mPosition + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(final int position) {
+        final int count = getCount();
+        if (position >= count) {
+            mPosition = count;
+            return false;
+        }
+        if (position < 0) {
+            mPosition = -1;
+            return false;
+        }
+        mPosition = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(getCount() - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(mPosition + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(mPosition - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return mPosition == 0 && getCount() != 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        final int count = getCount();
+        return mPosition == count - 1 && count != 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return getCount() == 0 || mPosition == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        final int count = getCount();
+        return count == 0 || mPosition == count;
+    }
+
+    // Everything that reaches the shared Cursor is serialized on it, as other handles may
+    // move it concurrently, and getCount() may fill the window of a SQLiteCursor
+
+    @Override
+    public int getCount() {
+        synchronized (mCursor) {
+            return mCursor.getCount();
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        synchronized (mCursor) {
+            return mCursor.getColumnCount();
+        }
+    }
+
+    @Override
+    public int getColumnIndex(final String columnName) {
+        synchronized (mCursor) {
+            return mCursor.getColumnIndex(columnName);
+        }
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(final String columnName) {
+        synchronized (mCursor) {
+            return mCursor.getColumnIndexOrThrow(columnName);
+        }
+    }
+
+    @Override
+    public String getColumnName(final int columnIndex) {
+        synchronized (mCursor) {
+            return mCursor.getColumnName(columnIndex);
+        }
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        synchronized (mCursor) {
+            return mCursor.getColumnNames();
+        }
+    }
+
+    @Override
+    public Bundle getExtras() {
+        synchronized (mCursor) {
+            return mCursor.getExtras();
+        }
+    }
+
+    @Override
+    public Bundle respond(final Bundle extras) {
+        synchronized (mCursor) {
+            return mCursor.respond(extras);
+        }
+    }
+
+    @Override
+    public void registerContentObserver(final ContentObserver observer) {
+        synchronized (mCursor) {
+            if (!mClosed.get()) {
+                mCursor.registerContentObserver(observer);
+                mContentObservers.add(observer);
+            }
+        }
+    }
+
+    @Override
+    public void unregisterContentObserver(final ContentObserver observer) {
+        synchronized (mCursor) {
+            if (mContentObservers.remove(observer)) {
+                mCursor.unregisterContentObserver(observer);
+            }
+        }
+    }
+
+    @Override
+    public void registerDataSetObserver(final DataSetObserver observer) {
+        synchronized (mCursor) {
+            if (!mClosed.get()) {
+                mCursor.registerDataSetObserver(observer);
+                mDataSetObservers.add(observer);
+            }
+        }
+    }
+
+    @Override
+    public void unregisterDataSetObserver(final DataSetObserver observer) {
+        synchronized (mCursor) {
+            if (mDataSetObservers.remove(observer)) {
+                mCursor.unregisterDataSetObserver(observer);
+            }
+        }
+    }
+
+    @Override
+    public byte[] getBlob(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getBlob(columnIndex);
+        }
+    }
+
+    @Override
+    public String getString(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getString(columnIndex);
+        }
+    }
+
+    @Override
+    public void copyStringToBuffer(final int columnIndex, final CharArrayBuffer buffer) {
+        synchronized (mCursor) {
+            syncPosition();
+            mCursor.copyStringToBuffer(columnIndex, buffer);
+        }
+    }
+
+    @Override
+    public short getShort(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getShort(columnIndex);
+        }
+    }
+
+    @Override
+    public int getInt(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getInt(columnIndex);
+        }
+    }
+
+    @Override
+    public long getLong(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getLong(columnIndex);
+        }
+    }
+
+    @Override
+    public float getFloat(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getFloat(columnIndex);
+        }
+    }
+
+    @Override
+    public double getDouble(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getDouble(columnIndex);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    @Override
+    public int getType(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.getType(columnIndex);
+        }
+    }
+
+    @Override
+    public boolean isNull(final int columnIndex) {
+        synchronized (mCursor) {
+            syncPosition();
+            return mCursor.isNull(columnIndex);
+        }
+    }
+
+    private void syncPosition() {
+        if (mCursor.getPosition() != mPosition) {
+            mCursor.moveToPosition(mPosition);
+        }
+    }
+}
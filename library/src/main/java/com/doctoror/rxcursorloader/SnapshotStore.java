@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader;
+
+import android.os.Parcel;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import static com.doctoror.rxcursorloader.RxCursorLoader.TAG;
+import static com.doctoror.rxcursorloader.RxCursorLoader.isDebugLoggingEnabled;
+
+/**
+ * Persistent store of the last loaded result of every {@link RxCursorLoader.Query}, so that a
+ * loader can emit it right after a cold start, before the provider answers.
+ * <p>
+ * Each result is written to its own compact binary file in the directory, and read back through
+ * a memory-mapped buffer. The file name is derived from the {@link RxCursorLoader.Query} as
+ * written by {@link RxCursorLoader.Query#writeToParcel(Parcel, int)} and the schema version, so
+ * incrementing the schema version when the provider schema changes orphans all old files.
+ * <p>
+ * Pass to {@link RxCursorLoader.Options.Builder#setSnapshotStore(SnapshotStore)}. Files are
+ * read and written on the loading {@link io.reactivex.Scheduler}. Safe to use from any thread.
+ */
+public final class SnapshotStore {
+
+    private static final int MAGIC = 0x52434c53;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BLOB = 4;
+
+    private static final String FILE_SUFFIX = ".snapshot";
+
+    @NonNull
+    private final File mDirectory;
+
+    private final int mSchemaVersion;
+
+    /**
+     * @param directory     the directory to store files in, for instance a subdirectory of
+     *                      {@link android.content.Context#getCacheDir()}. Created if missing.
+     * @param schemaVersion the version of the data, must be changed whenever the stored results
+     *                      become invalid, for instance when the provider schema changes
+     */
+    public SnapshotStore(@NonNull final File directory, final int schemaVersion) {
+        //noinspection ConstantConditions
+        if (directory == null) {
+            throw new NullPointerException("directory must not be null");
+        }
+        mDirectory = directory;
+        mSchemaVersion = schemaVersion;
+    }
+
+    /**
+     * Deletes all stored results.
+     */
+    public void clear() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(FILE_SUFFIX)) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the stored result, or null if none or unreadable
+     */
+    @Nullable
+    CursorSnapshot read(@NonNull final RxCursorLoader.Query query) {
+        final File file = fileOf(query);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return readFile(file);
+        } catch (IOException | RuntimeException e) {
+            // A corrupt or truncated file is a miss, it must not fail the loader
+            if (isDebugLoggingEnabled()) {
+                Log.d(TAG, "Failed to read snapshot " + file, e);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the stored result. Failures are ignored.
+     */
+    void write(
+            @NonNull final RxCursorLoader.Query query,
+            @NonNull final CursorSnapshot snapshot) {
+        final File file = fileOf(query);
+        final File temp = new File(
+                mDirectory, file.getName() + ".tmp" + Thread.currentThread().getId());
+        try {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs() && !mDirectory.isDirectory()) {
+                throw new IOException("Failed to create " + mDirectory);
+            }
+            writeFile(temp, snapshot);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        } catch (IOException e) {
+            if (isDebugLoggingEnabled()) {
+                Log.d(TAG, "Failed to write snapshot " + file, e);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    @NonNull
+    private CursorSnapshot readFile(@NonNull final File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT_VERSION
+                    || buffer.getInt() != mSchemaVersion) {
+                throw new IllegalStateException("Unsupported snapshot");
+            }
+
+            // Every name has at least its length
+            final String[] columnNames = new String[readCount(buffer, 4)];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = readString(buffer);
+            }
+
+            // Every value has at least its type
+            final int rowCount = readCount(buffer, columnNames.length);
+            final CursorSnapshot.Builder builder
+                    = new CursorSnapshot.Builder(columnNames, rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                for (int column = 0; column < columnNames.length; column++) {
+                    readValue(buffer, builder, row, column);
+                }
+            }
+            return builder.build(rowCount);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static void readValue(
+            @NonNull final MappedByteBuffer buffer,
+            @NonNull final CursorSnapshot.Builder builder,
+            final int row,
+            final int column) {
+        final byte type = buffer.get();
+        switch (type) {
+            case TYPE_NULL:
+                builder.putNull(row, column);
+                break;
+
+            case TYPE_LONG:
+                builder.putLong(row, column, buffer.getLong());
+                break;
+
+            case TYPE_DOUBLE:
+                builder.putDouble(row, column, buffer.getDouble());
+                break;
+
+            case TYPE_STRING:
+                builder.putString(row, column, readString(buffer));
+                break;
+
+            case TYPE_BLOB:
+                final byte[] blob = new byte[readCount(buffer, 1)];
+                buffer.get(blob);
+                builder.putBlob(row, column, blob);
+                break;
+
+            default:
+                throw new IllegalStateException("Unexpected value type " + type);
+        }
+    }
+
+    @NonNull
+    private static String readString(@NonNull final MappedByteBuffer buffer) {
+        final char[] chars = new char[readCount(buffer, 2)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads a count and checks it against the remaining bytes, so that a corrupt count does not
+     * cause a huge allocation.
+     *
+     * @param bytesPerItem the minimum number of bytes every counted item takes
+     * @throws IllegalStateException if the count is negative or the items can not fit
+     */
+    private static int readCount(
+            @NonNull final MappedByteBuffer buffer,
+            final int bytesPerItem) {
+        final int count = buffer.getInt();
+        if (count < 0 || (long) count * bytesPerItem > buffer.remaining()) {
+            throw new IllegalStateException("Corrupt count " + count);
+        }
+        return count;
+    }
+
+    private void writeFile(
+            @NonNull final File file,
+            @NonNull final CursorSnapshot snapshot) throws IOException {
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(mSchemaVersion);
+
+            final String[] columnNames = snapshot.getColumnNames();
+            out.writeInt(columnNames.length);
+            for (final String columnName : columnNames) {
+                writeString(out, columnName);
+            }
+
+            final int rowCount = snapshot.getRowCount();
+            out.writeInt(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                for (int column = 0; column < columnNames.length; column++) {
+                    writeValue(out, snapshot, row, column);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeValue(
+            @NonNull final DataOutputStream out,
+            @NonNull final CursorSnapshot snapshot,
+            final int row,
+            final int column) throws IOException {
+        switch (snapshot.getType(row, column)) {
+            case CursorSnapshot.TYPE_NULL:
+                out.writeByte(TYPE_NULL);
+                break;
+
+            case CursorSnapshot.TYPE_INTEGER:
+                out.writeByte(TYPE_LONG);
+                out.writeLong(snapshot.getLong(row, column));
+                break;
+
+            case CursorSnapshot.TYPE_FLOAT:
+                out.writeByte(TYPE_DOUBLE);
+                out.writeDouble(snapshot.getDouble(row, column));
+                break;
+
+            case CursorSnapshot.TYPE_BLOB:
+                final byte[] blob = snapshot.getBlob(row, column);
+                out.writeByte(TYPE_BLOB);
+                out.writeInt(blob.length);
+                out.write(blob);
+                break;
+
+            default:
+                out.writeByte(TYPE_STRING);
+                writeString(out, snapshot.getString(row, column));
+                break;
+        }
+    }
+
+    private static void writeString(
+            @NonNull final DataOutputStream out,
+            @NonNull final String value) throws IOException {
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    @NonNull
+    private File fileOf(@NonNull final RxCursorLoader.Query query) {
+        final Parcel parcel = Parcel.obtain();
+        final byte[] queryBytes;
+        try {
+            query.writeToParcel(parcel, 0);
+            queryBytes = parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(queryBytes);
+        digest.update(new byte[]{
+                (byte) (mSchemaVersion >>> 24),
+                (byte) (mSchemaVersion >>> 16),
+                (byte) (mSchemaVersion >>> 8),
+                (byte) mSchemaVersion
+        });
+
+        final StringBuilder name = new StringBuilder(48);
+        for (final byte b : digest.digest()) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16));
+            name.append(Character.forDigit(b & 0xf, 16));
+        }
+        return new File(mDirectory, name.append(FILE_SUFFIX).toString());
+    }
+}
@@ -16,33 +16,64 @@
 package com.doctoror.rxcursorloader;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.provider.MediaStore;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.OngoingStubbing;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.observers.BaseTestConsumer;
 import io.reactivex.observers.TestObserver;
 import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subscribers.TestSubscriber;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 @Config(manifest = Config.NONE)
 @RunWith(RobolectricTestRunner.class)
@@ -59,6 +90,18 @@ public final class RxCursorLoaderTest {
         when(contentResolver
                 .query(eq(URI), (String[]) any(), (String) any(), (String[]) any(), (String) any()))
                 .thenReturn(stubCursor);
+        whenQueryWithCancellationSignal().thenReturn(stubCursor);
+    }
+
+    @NonNull
+    private OngoingStubbing<Cursor> whenQueryWithCancellationSignal() {
+        return when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()));
     }
 
     private void assertHasValidOpenCursor(@NonNull final BaseTestConsumer observer) {
@@ -75,6 +118,26 @@ public final class RxCursorLoaderTest {
         when(contentResolver
                 .query(eq(URI), (String[]) any(), (String) any(), (String[]) any(), (String) any()))
                 .thenReturn(null);
+        whenQueryWithCancellationSignal().thenReturn(null);
+    }
+
+    @NonNull
+    private Cursor[] givenQueryReturnsCursors(final int count) {
+        final Cursor[] cursors = new Cursor[count];
+        for (int i = 0; i < count; i++) {
+            cursors[i] = mock(Cursor.class);
+        }
+        whenQueryWithCancellationSignal()
+                .thenReturn(cursors[0], Arrays.copyOfRange(cursors, 1, count));
+        return cursors;
+    }
+
+    @NonNull
+    private ContentObserver captureContentObserver() {
+        final ArgumentCaptor<ContentObserver> captor = ArgumentCaptor.forClass(
+                ContentObserver.class);
+        verify(contentResolver).registerContentObserver(eq(URI), eq(true), captor.capture());
+        return captor.getValue();
     }
 
     @NonNull
@@ -93,6 +156,13 @@ public final class RxCursorLoaderTest {
                 BackpressureStrategy.ERROR);
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void idInResultFilterWithoutIdColumnThrowsIllegalStateException() {
+        new RxCursorLoader.Options.Builder()
+                .setChangeFilter(ChangeFilters.idInResult())
+                .create();
+    }
+
     @Test(expected = NullPointerException.class)
     public void nullContentResolverThrowsNullPointerException() {
         //noinspection ConstantConditions
@@ -192,4 +262,1558 @@ public final class RxCursorLoaderTest {
 
         observer.dispose();
     }
+
+    @Test
+    public void singleClosesCursorLoadedAfterDispose() {
+        final Cursor cursor = mock(Cursor.class);
+        final TestObserver<Cursor> observer = new TestObserver<>();
+
+        whenQueryWithCancellationSignal().thenAnswer(new Answer<Cursor>() {
+
+            @Override
+            public Cursor answer(final InvocationOnMock invocation) {
+                observer.dispose();
+                return cursor;
+            }
+        });
+
+        RxCursorLoader.single(contentResolver, buildQuery()).subscribe(observer);
+
+        observer.assertNoValues();
+        observer.assertNoErrors();
+        verify(cursor).close();
+    }
+
+    @Test
+    public void flowableCoalescesNotificationBurstIntoSingleReload() {
+        final TestScheduler scheduler = new TestScheduler();
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setCoalescing(100, 1000, TimeUnit.MILLISECONDS)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                scheduler,
+                BackpressureStrategy.BUFFER,
+                options).test();
+
+        scheduler.triggerActions();
+        observer.assertValueCount(1);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        for (int i = 0; i < 10; i++) {
+            contentObserver.onChange(false);
+            scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        }
+        observer.assertValueCount(1);
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+
+        assertEquals(10, options.getStats().getNotificationCount());
+        assertEquals(9, options.getStats().getCoalescedNotificationCount());
+
+        observer.dispose();
+    }
+
+    @Test
+    public void adaptiveThrottlingBacksOffWhileNotificationsAreHot() {
+        final TestScheduler scheduler = new TestScheduler();
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setAdaptiveThrottling(1f, 1, TimeUnit.SECONDS)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                scheduler,
+                BackpressureStrategy.BUFFER,
+                options).test();
+
+        scheduler.triggerActions();
+        observer.assertValueCount(1);
+
+        // Quiet so far, so the burst reloads right away, and widens the interval
+        final ContentObserver contentObserver = captureContentObserver();
+        for (int i = 0; i < 3; i++) {
+            contentObserver.onChange(false);
+        }
+        scheduler.triggerActions();
+        observer.assertValueCount(2);
+        assertEquals(2, options.getStats().getCoalescedNotificationCount());
+
+        contentObserver.onChange(false);
+        scheduler.advanceTimeBy(49, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(3);
+
+        // A single notification narrows it back
+        contentObserver.onChange(false);
+        scheduler.advanceTimeBy(24, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(3);
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(4);
+
+        observer.dispose();
+    }
+
+    @Test
+    public void adaptiveThrottlingKeepsSchedulingAfterDeferredReload() {
+        final TestScheduler scheduler = new TestScheduler();
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setAdaptiveThrottling(1f, 1, TimeUnit.SECONDS)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                scheduler,
+                BackpressureStrategy.LATEST,
+                options).test(1);
+
+        scheduler.triggerActions();
+        observer.assertValueCount(1);
+
+        // No demand, so the throttled reload is deferred instead of running
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        // Must be handled now rather than after the deferred reload
+        contentObserver.onChange(false);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        verifyQueryCount(1);
+
+        observer.request(1);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertValueCount(2);
+        verifyQueryCount(2);
+
+        // Nothing changed since, so no more reloads
+        observer.request(1);
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertValueCount(2);
+        verifyQueryCount(2);
+
+        observer.dispose();
+    }
+
+    @Test
+    public void flowableCoalescingDoesNotExceedMaxLatency() {
+        final TestScheduler scheduler = new TestScheduler();
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setCoalescing(100, 300, TimeUnit.MILLISECONDS)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                scheduler,
+                BackpressureStrategy.BUFFER,
+                options).test();
+
+        scheduler.triggerActions();
+
+        final ContentObserver contentObserver = captureContentObserver();
+        for (int i = 0; i < 6; i++) {
+            contentObserver.onChange(false);
+            scheduler.advanceTimeBy(50, TimeUnit.MILLISECONDS);
+        }
+
+        // The burst is still going on, but max latency has passed since the first notification
+        observer.assertValueCount(2);
+
+        observer.dispose();
+    }
+
+    @Test
+    public void managedFlowableClosesPreviousAndLastCursor() {
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setManagedCursors(Schedulers.trampoline())
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER,
+                options).test();
+
+        captureContentObserver().onChange(false);
+
+        observer.assertValues(cursors[0], cursors[1]);
+        verify(cursors[0]).close();
+        verify(cursors[1], never()).close();
+
+        observer.dispose();
+        verify(cursors[1]).close();
+    }
+
+    @Test
+    public void reloadDoesNotCacheResultInvalidatedWhileQuerying() {
+        final MatrixCursor stale = matrixCursor(1);
+        final MatrixCursor fresh = matrixCursor(2);
+        final PauseController pauseController = new PauseController();
+        final ResultCache resultCache = ResultCache.withMaxRows(10);
+        whenQueryWithCancellationSignal()
+                .thenAnswer(new Answer<Cursor>() {
+
+                    @Override
+                    public Cursor answer(final InvocationOnMock invocation) {
+                        // Changes while querying, paused so that no reload follows
+                        pauseController.pause();
+                        captureContentObserver().onChange(false);
+                        return stale;
+                    }
+                })
+                .thenReturn(fresh);
+
+        RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setResultCache(resultCache)
+                                .setPauseController(pauseController)
+                                .create())
+                .test()
+                .dispose();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setResultCache(resultCache)
+                                .create())
+                .test();
+
+        observer.assertValues(fresh);
+    }
+
+    @Test
+    public void managedFlowableClosesCursorsDroppedByBackpressure() {
+        final MatrixCursor first = matrixCursor(1);
+        final MatrixCursor second = matrixCursor(2);
+        whenQueryWithCancellationSignal().thenReturn(first, second);
+        final ResultCache resultCache = ResultCache.withMaxRows(10);
+
+        RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setResultCache(resultCache)
+                                .create())
+                .test()
+                .dispose();
+
+        // The cached result is emitted on subscription, regardless of demand
+        final List<ReloadMetrics> metrics = new ArrayList<>();
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.DROP,
+                        new RxCursorLoader.Options.Builder()
+                                .setResultCache(resultCache)
+                                .setManagedCursors(Schedulers.trampoline())
+                                .setMetricsListener(new LoaderMetricsListener() {
+
+                                    @Override
+                                    public void onReload(@NonNull final ReloadMetrics m) {
+                                        metrics.add(m);
+                                    }
+                                })
+                                .create())
+                .test(0);
+
+        observer.assertNoValues();
+
+        observer.request(1);
+        observer.assertValues(second);
+        assertFalse(second.isClosed());
+
+        // The dropped cached cursor is closed, so only the delivered one is live
+        assertEquals(1, metrics.size());
+        assertEquals(1, metrics.get(0).getLiveCursorCount());
+
+        observer.dispose();
+        assertTrue(second.isClosed());
+    }
+
+    @Test
+    public void managedFlowableDoesNotLoadCursorsThatWouldBeDropped() {
+        final Cursor[] cursors = givenQueryReturnsCursors(3);
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setManagedCursors(Schedulers.trampoline())
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.LATEST,
+                options).test(0);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false);
+        contentObserver.onChange(false);
+
+        observer.assertNoValues();
+        verifyQueryCount(0);
+
+        observer.request(1);
+        observer.assertValues(cursors[0]);
+        verify(cursors[0], never()).close();
+
+        observer.dispose();
+        verify(cursors[0], times(1)).close();
+        verifyQueryCount(1);
+    }
+
+    @Test
+    public void binderDispatchReloadsOnNotification() {
+        assertNull(ObserverHandlers.get(RxCursorLoader.Options.ObserverDispatch.BINDER));
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER,
+                new RxCursorLoader.Options.Builder()
+                        .setObserverDispatch(RxCursorLoader.Options.ObserverDispatch.BINDER)
+                        .create()).test();
+
+        observer.assertValues(cursors[0]);
+
+        // Without a Handler the platform calls onChange on the dispatching thread
+        captureContentObserver().dispatchChange(false, URI);
+        observer.assertValues(cursors[0], cursors[1]);
+
+        observer.dispose();
+    }
+
+    @Test
+    public void backgroundDispatchReloadsOnNotification() {
+        final Handler handler = ObserverHandlers.get(
+                RxCursorLoader.Options.ObserverDispatch.BACKGROUND);
+        assertNotNull(handler);
+        assertNotSame(Looper.getMainLooper(), handler.getLooper());
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER,
+                new RxCursorLoader.Options.Builder()
+                        .setObserverDispatch(RxCursorLoader.Options.ObserverDispatch.BACKGROUND)
+                        .create()).test();
+
+        observer.assertValues(cursors[0]);
+
+        captureContentObserver().dispatchChange(false, URI);
+        shadowOf(handler.getLooper()).idle();
+        observer.assertValues(cursors[0], cursors[1]);
+
+        observer.dispose();
+    }
+
+    @Test
+    public void concurrentReloadRequestsCollapseIntoSingleFollowUpReload()
+            throws InterruptedException {
+        final Cursor[] cursors = new Cursor[]{
+                mock(Cursor.class), mock(Cursor.class), mock(Cursor.class)
+        };
+        final CountDownLatch queryStarted = new CountDownLatch(1);
+        final CountDownLatch queryProceed = new CountDownLatch(1);
+        final AtomicInteger queryCount = new AtomicInteger();
+        whenQueryWithCancellationSignal().thenAnswer(new Answer<Cursor>() {
+
+            @Override
+            public Cursor answer(final InvocationOnMock invocation) throws Throwable {
+                final int index = queryCount.getAndIncrement();
+                if (index == 1) {
+                    queryStarted.countDown();
+                    queryProceed.await(5, TimeUnit.SECONDS);
+                }
+                return cursors[index];
+            }
+        });
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER).test();
+        observer.assertValues(cursors[0]);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        final Thread reloading = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                contentObserver.onChange(false);
+            }
+        });
+        reloading.start();
+        assertTrue(queryStarted.await(5, TimeUnit.SECONDS));
+
+        // Requests made during the reload return right away instead of waiting for it
+        final Thread[] requesting = new Thread[3];
+        for (int i = 0; i < requesting.length; i++) {
+            requesting[i] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    contentObserver.onChange(false);
+                }
+            });
+            requesting[i].start();
+        }
+        for (final Thread thread : requesting) {
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        }
+
+        queryProceed.countDown();
+        reloading.join(5000);
+        assertFalse(reloading.isAlive());
+
+        // The superseded result is dropped, and all requests are served by one more reload
+        verifyQueryCount(3);
+        observer.assertValues(cursors[0], cursors[2]);
+        verify(cursors[1]).close();
+
+        observer.dispose();
+    }
+
+    @Test
+    public void releaseDoesNotBlockWhileOnNextRuns() throws InterruptedException {
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+        final CountDownLatch onNextStarted = new CountDownLatch(1);
+        final CountDownLatch onNextProceed = new CountDownLatch(1);
+
+        final TestSubscriber<Cursor> observer = new TestSubscriber<Cursor>() {
+
+            @Override
+            public void onNext(final Cursor cursor) {
+                super.onNext(cursor);
+                if (cursor == cursors[1]) {
+                    onNextStarted.countDown();
+                    try {
+                        onNextProceed.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER).subscribe(observer);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        final Thread emitting = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                contentObserver.onChange(false);
+            }
+        });
+        emitting.start();
+        assertTrue(onNextStarted.await(5, TimeUnit.SECONDS));
+
+        final Thread releasing = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                observer.dispose();
+            }
+        });
+        releasing.start();
+        releasing.join(5000);
+        assertFalse(releasing.isAlive());
+        verify(contentResolver).unregisterContentObserver(contentObserver);
+
+        onNextProceed.countDown();
+        emitting.join(5000);
+        assertFalse(emitting.isAlive());
+    }
+
+    @Test
+    public void disposeCancelsQueryInProgress() {
+        final Cursor cursor = mock(Cursor.class);
+        final TestSubscriber<Cursor> observer = new TestSubscriber<>();
+        final CancellationSignal[] cancellationSignal = new CancellationSignal[1];
+
+        whenQueryWithCancellationSignal().thenAnswer(new Answer<Cursor>() {
+
+            @Override
+            public Cursor answer(final InvocationOnMock invocation) {
+                cancellationSignal[0] = invocation.getArgument(5);
+                observer.dispose();
+                return cursor;
+            }
+        });
+
+        RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER).subscribe(observer);
+
+        assertTrue(cancellationSignal[0].isCanceled());
+        observer.assertNoValues();
+        observer.assertNoErrors();
+        verify(cursor).close();
+    }
+
+    @Test
+    public void registrySharesLoaderBetweenSubscribersOfEqualQuery() {
+        final Cursor[] cursors = givenQueryReturnsCursors(1);
+        final CursorLoaderRegistry registry = new CursorLoaderRegistry(
+                contentResolver, Schedulers.trampoline());
+
+        final TestSubscriber<Cursor> observer1 = registry.flowable(buildQuery()).test();
+        final TestSubscriber<Cursor> observer2 = registry.flowable(buildQuery()).test();
+
+        verify(contentResolver, times(1))
+                .registerContentObserver(eq(URI), eq(true), (ContentObserver) any());
+        assertEquals(1, registry.getActiveLoaderCount());
+
+        observer1.assertValueCount(1);
+        observer2.assertValueCount(1);
+
+        final Cursor handle1 = observer1.values().get(0);
+        final Cursor handle2 = observer2.values().get(0);
+        assertNotSame(handle1, handle2);
+
+        handle1.close();
+        assertTrue(handle1.isClosed());
+        verify(cursors[0], never()).close();
+
+        observer1.dispose();
+        observer2.dispose();
+        assertEquals(0, registry.getActiveLoaderCount());
+        verify(cursors[0], never()).close();
+
+        handle2.close();
+        verify(cursors[0]).close();
+    }
+
+    @Test
+    public void registryHandleUnregistersItsObserversOnClose() {
+        final Cursor[] cursors = givenQueryReturnsCursors(1);
+        final CursorLoaderRegistry registry = new CursorLoaderRegistry(
+                contentResolver, Schedulers.trampoline());
+
+        final TestSubscriber<Cursor> observer1 = registry.flowable(buildQuery()).test();
+        final TestSubscriber<Cursor> observer2 = registry.flowable(buildQuery()).test();
+        final Cursor handle1 = observer1.values().get(0);
+        final Cursor handle2 = observer2.values().get(0);
+
+        final ContentObserver contentObserver = mock(ContentObserver.class);
+        final DataSetObserver dataSetObserver = mock(DataSetObserver.class);
+        final DataSetObserver otherDataSetObserver = mock(DataSetObserver.class);
+        handle1.registerContentObserver(contentObserver);
+        handle1.registerDataSetObserver(dataSetObserver);
+        handle2.registerDataSetObserver(otherDataSetObserver);
+        verify(cursors[0]).registerContentObserver(contentObserver);
+        verify(cursors[0]).registerDataSetObserver(dataSetObserver);
+
+        handle1.close();
+        verify(cursors[0]).unregisterContentObserver(contentObserver);
+        verify(cursors[0]).unregisterDataSetObserver(dataSetObserver);
+        verify(cursors[0], never()).unregisterDataSetObserver(otherDataSetObserver);
+
+        // Only the handle's own observers are removed
+        handle1.unregisterDataSetObserver(otherDataSetObserver);
+        verify(cursors[0], never()).unregisterDataSetObserver(otherDataSetObserver);
+
+        handle2.close();
+        verify(cursors[0]).unregisterDataSetObserver(otherDataSetObserver);
+
+        observer1.dispose();
+        observer2.dispose();
+    }
+
+    @Test
+    public void registryClosesHandleCancelledBeforeDelivery() {
+        final Cursor[] cursors = givenQueryReturnsCursors(1);
+        final CursorLoaderRegistry registry = new CursorLoaderRegistry(
+                contentResolver, Schedulers.trampoline());
+
+        final TestSubscriber<Cursor> observer = registry.flowable(buildQuery()).test(0);
+        observer.dispose();
+
+        observer.assertNoValues();
+        assertEquals(0, registry.getActiveLoaderCount());
+        verify(cursors[0]).close();
+    }
+
+    @Test
+    public void registryKeepsLoaderWhileSubscribedAfterResubscribe() {
+        givenQueryReturnsCursors(2);
+        final CursorLoaderRegistry registry = new CursorLoaderRegistry(
+                contentResolver, Schedulers.trampoline());
+
+        registry.flowable(buildQuery()).test().dispose();
+        assertEquals(0, registry.getActiveLoaderCount());
+
+        final TestSubscriber<Cursor> observer1 = registry.flowable(buildQuery()).test();
+        final TestSubscriber<Cursor> observer2 = registry.flowable(buildQuery()).test();
+        assertEquals(1, registry.getActiveLoaderCount());
+        verifyQueryCount(2);
+
+        observer1.dispose();
+        assertEquals(1, registry.getActiveLoaderCount());
+
+        observer2.dispose();
+        assertEquals(0, registry.getActiveLoaderCount());
+    }
+
+    @Test
+    public void flowablePrefillsWindowBeforeEmitting() {
+        final Cursor[] cursors = givenQueryReturnsCursors(1);
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder().create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER,
+                options).test();
+
+        observer.assertValues(cursors[0]);
+        verify(cursors[0]).getCount();
+        assertEquals(1, options.getStats().getWindowFillCount());
+
+        observer.dispose();
+    }
+
+    @Test
+    public void flowableWithoutOptionsDoesNotPrefillWindow() {
+        final Cursor[] cursors = givenQueryReturnsCursors(1);
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader.flowable(
+                contentResolver,
+                buildQuery(),
+                Schedulers.trampoline(),
+                BackpressureStrategy.BUFFER).test();
+
+        observer.assertValues(cursors[0]);
+        verify(cursors[0], never()).getCount();
+
+        observer.dispose();
+    }
+
+    @NonNull
+    private static MatrixCursor matrixCursor(final int rows) {
+        final MatrixCursor c = new MatrixCursor(new String[]{"_id"});
+        for (int i = 0; i < rows; i++) {
+            c.addRow(new Object[]{i});
+        }
+        return c;
+    }
+
+    @Test
+    public void pagedLoadsNextPageOnRequest() {
+        final MatrixCursor notHonored = matrixCursor(3);
+        final MatrixCursor page1 = matrixCursor(2);
+        final MatrixCursor page2 = matrixCursor(1);
+
+        when(contentResolver.query(
+                eq(URI), (String[]) any(), (Bundle) any(), (CancellationSignal) any()))
+                .thenReturn(notHonored);
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                eq("_id LIMIT 2 OFFSET 0"),
+                (CancellationSignal) any()))
+                .thenReturn(page1);
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                eq("_id LIMIT 2 OFFSET 2"),
+                (CancellationSignal) any()))
+                .thenReturn(page2);
+
+        final RxCursorLoader.PagedQuery pagedQuery = new RxCursorLoader.PagedQuery.Builder()
+                .setQuery(new RxCursorLoader.Query.Builder()
+                        .setContentUri(URI)
+                        .setSortOrder("_id")
+                        .create())
+                .setPageSize(2)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .paged(contentResolver, pagedQuery, Schedulers.trampoline())
+                .test(1);
+
+        observer.assertValues((Cursor) page1);
+        observer.assertNotComplete();
+        assertTrue(notHonored.isClosed());
+
+        observer.request(1);
+        observer.assertValues(page1, page2);
+        observer.assertComplete();
+
+        verify(contentResolver, times(1)).query(
+                eq(URI), (String[]) any(), (Bundle) any(), (CancellationSignal) any());
+    }
+
+    @Test
+    public void rowsEmitsMappedRowsOnRequestAndClosesCursor() {
+        final MatrixCursor cursor = new MatrixCursor(new String[]{"name", "_id"});
+        cursor.addRow(new Object[]{"a", 1});
+        cursor.addRow(new Object[]{"b", 2});
+        whenQueryWithCancellationSignal().thenReturn(cursor);
+
+        final RxCursorLoader.Query query = new RxCursorLoader.Query.Builder()
+                .setContentUri(URI)
+                .setProjection(new String[]{"_id", "name"})
+                .create();
+
+        final TestSubscriber<String> observer = RxCursorLoader
+                .rows(contentResolver, query, Schedulers.trampoline(), new RowMapper<String>() {
+
+                    @NonNull
+                    @Override
+                    public String map(
+                            @NonNull final Cursor cursor,
+                            @NonNull final int[] columnIndices) {
+                        return cursor.getLong(columnIndices[0])
+                                + cursor.getString(columnIndices[1]);
+                    }
+                })
+                .test(1);
+
+        observer.assertValues("1a");
+        assertFalse(cursor.isClosed());
+
+        observer.request(2);
+        observer.assertValues("1a", "2b");
+        observer.assertComplete();
+        assertTrue(cursor.isClosed());
+    }
+
+    @Test
+    public void rowsDisposeCancelsQueryInProgress() {
+        final Cursor cursor = mock(Cursor.class);
+        final TestSubscriber<String> observer = new TestSubscriber<>();
+        final CancellationSignal[] cancellationSignal = new CancellationSignal[1];
+
+        whenQueryWithCancellationSignal().thenAnswer(new Answer<Cursor>() {
+
+            @Override
+            public Cursor answer(final InvocationOnMock invocation) {
+                cancellationSignal[0] = invocation.getArgument(5);
+                observer.dispose();
+                return cursor;
+            }
+        });
+
+        RxCursorLoader
+                .rows(contentResolver, buildQuery(), Schedulers.trampoline(),
+                        new RowMapper<String>() {
+
+                            @NonNull
+                            @Override
+                            public String map(
+                                    @NonNull final Cursor cursor,
+                                    @NonNull final int[] columnIndices) {
+                                return cursor.getString(0);
+                            }
+                        })
+                .subscribe(observer);
+
+        assertTrue(cancellationSignal[0].isCanceled());
+        observer.assertNoValues();
+        observer.assertNoErrors();
+        verify(cursor).close();
+    }
+
+    @NonNull
+    private static MatrixCursor idNameCursor(@NonNull final Object[]... rows) {
+        final MatrixCursor c = new MatrixCursor(new String[]{"_id", "name"});
+        for (final Object[] row : rows) {
+            c.addRow(row);
+        }
+        return c;
+    }
+
+    @Test
+    public void changeSetsReportInsertedRemovedChangedAndMovedRows() {
+        final MatrixCursor first = idNameCursor(
+                new Object[]{1, "a"},
+                new Object[]{2, "b"},
+                new Object[]{3, "c"},
+                new Object[]{4, "d"});
+        final MatrixCursor second = idNameCursor(
+                new Object[]{4, "d"},
+                new Object[]{1, "a"},
+                new Object[]{3, "C"},
+                new Object[]{5, "e"});
+        whenQueryWithCancellationSignal().thenReturn(first, second);
+
+        final TestSubscriber<CursorChangeSet> observer = RxCursorLoader
+                .changeSets(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        new RxCursorLoader.Options.Builder().create(),
+                        "_id")
+                .test();
+
+        final CursorChangeSet initial = observer.values().get(0);
+        assertTrue(initial.isInitial());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, initial.getInsertedPositions());
+
+        captureContentObserver().onChange(false);
+        observer.assertValueCount(2);
+
+        final CursorChangeSet changeSet = observer.values().get(1);
+        assertSame(second, changeSet.getCursor());
+        assertFalse(changeSet.isInitial());
+        assertTrue(changeSet.hasChanges());
+        assertArrayEquals(new int[]{3}, changeSet.getInsertedPositions());
+        assertArrayEquals(new int[]{1}, changeSet.getRemovedPositions());
+        assertArrayEquals(new int[]{2}, changeSet.getChangedPositions());
+        assertArrayEquals(new int[]{3}, changeSet.getMovedFromPositions());
+        assertArrayEquals(new int[]{0}, changeSet.getMovedToPositions());
+    }
+
+    @Test
+    public void changeSetsClosesCursorWithoutIdColumn() {
+        final MatrixCursor cursor = matrixCursor(2);
+        whenQueryWithCancellationSignal().thenReturn(cursor);
+
+        RxCursorLoader
+                .changeSets(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        new RxCursorLoader.Options.Builder().create(),
+                        "missing")
+                .test()
+                .assertError(IllegalArgumentException.class);
+
+        assertTrue(cursor.isClosed());
+    }
+
+    @Test
+    public void idInResultFilterSkipsChangesOfRowsNotInResult() {
+        whenQueryWithCancellationSignal().thenReturn(matrixCursor(2), matrixCursor(2));
+
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setChangeFilter(ChangeFilters.idInResult())
+                .setIdColumn("_id")
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        options)
+                .test();
+
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false, ContentUris.withAppendedId(URI, 5));
+        observer.assertValueCount(1);
+
+        contentObserver.onChange(false, ContentUris.withAppendedId(URI, 1));
+        observer.assertValueCount(2);
+
+        final LoaderStats stats = options.getStats();
+        assertEquals(2, stats.getNotificationCount());
+        assertEquals(1, stats.getSkippedReloadCount());
+        assertEquals(2, stats.getReloadCount());
+    }
+
+    @Test
+    public void skipUnchangedDoesNotEmitEqualResult() {
+        final MatrixCursor first = matrixCursor(2);
+        final MatrixCursor unchanged = matrixCursor(2);
+        final MatrixCursor changed = matrixCursor(3);
+        whenQueryWithCancellationSignal().thenReturn(first, unchanged, changed);
+
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setSkipUnchanged(true)
+                .create();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        options)
+                .test();
+
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false);
+        observer.assertValues(first);
+        assertTrue(unchanged.isClosed());
+
+        contentObserver.onChange(false);
+        observer.assertValues(first, changed);
+        assertEquals(1, options.getStats().getUnchangedResultCount());
+    }
+
+    @Test
+    public void pausedLoaderReloadsOnceOnResumeOnlyIfChanged() {
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+        final PauseController pauseController = new PauseController();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setPauseController(pauseController)
+                                .create())
+                .test();
+
+        pauseController.pause();
+        pauseController.resume();
+        observer.assertValues(cursors[0]);
+
+        pauseController.pause();
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false);
+        contentObserver.onChange(false);
+        observer.assertValues(cursors[0]);
+
+        pauseController.resume();
+        observer.assertValues(cursors[0], cursors[1]);
+    }
+
+    @Test
+    public void metricsListenerReceivesMetricsOfEveryReload() {
+        final MatrixCursor first = matrixCursor(2);
+        final MatrixCursor second = matrixCursor(3);
+        whenQueryWithCancellationSignal().thenReturn(first, second);
+
+        final List<ReloadMetrics> metrics = new ArrayList<>();
+        final RxCursorLoader.Query query = buildQuery();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        query,
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setMetricsListener(new LoaderMetricsListener() {
+
+                                    @Override
+                                    public void onReload(@NonNull final ReloadMetrics m) {
+                                        metrics.add(m);
+                                    }
+                                })
+                                .create())
+                .test();
+
+        first.close();
+        captureContentObserver().onChange(false);
+        observer.assertValueCount(2);
+
+        assertEquals(2, metrics.size());
+
+        final ReloadMetrics initial = metrics.get(0);
+        assertSame(query, initial.getQuery());
+        assertEquals(1, initial.getReloadCount());
+        assertEquals(2, initial.getRowCount());
+        assertEquals(-1, initial.getNotificationToEmissionNanos());
+        assertEquals(1, initial.getLiveCursorCount());
+        assertTrue(initial.isEmitted());
+
+        final ReloadMetrics reload = metrics.get(1);
+        assertEquals(initial.getSubscriptionId(), reload.getSubscriptionId());
+        assertEquals(2, reload.getReloadCount());
+        assertEquals(3, reload.getRowCount());
+        assertEquals(1, reload.getNotificationCount());
+        assertTrue(reload.getNotificationToEmissionNanos() >= 0);
+        assertEquals(1, reload.getLiveCursorCount());
+    }
+
+    @Test
+    public void multiReloadsOnlyAffectedQueryAndEmitsOnce() {
+        final Uri otherUri = URI.buildUpon().appendPath("other").build();
+        final MatrixCursor first = matrixCursor(1);
+        final MatrixCursor other = matrixCursor(2);
+        final MatrixCursor firstReloaded = matrixCursor(3);
+        whenQueryWithCancellationSignal().thenReturn(first, firstReloaded);
+        when(contentResolver.query(
+                eq(otherUri),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenReturn(other);
+
+        final TestSubscriber<MultiCursorResult> observer = RxCursorLoader
+                .multi(
+                        contentResolver,
+                        Arrays.asList(
+                                buildQuery(),
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(otherUri)
+                                        .create()),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder().create())
+                .test();
+
+        observer.assertValueCount(1);
+        final MultiCursorResult initial = observer.values().get(0);
+        assertSame(first, initial.get(0));
+        assertSame(other, initial.get(1));
+
+        captureContentObserver().onChange(false);
+
+        observer.assertValueCount(2);
+        final MultiCursorResult result = observer.values().get(1);
+        assertSame(firstReloaded, result.get(0));
+        assertTrue(result.isChanged(0));
+        assertSame(other, result.get(1));
+        assertFalse(result.isChanged(1));
+    }
+
+    @Test
+    public void multiMergesResultsNotDeliveredToSlowSubscriber() {
+        final Uri otherUri = URI.buildUpon().appendPath("other").build();
+        final MatrixCursor first = matrixCursor(1);
+        final MatrixCursor firstSuperseded = matrixCursor(2);
+        final MatrixCursor firstLatest = matrixCursor(3);
+        final MatrixCursor firstCancelled = matrixCursor(4);
+        final MatrixCursor other = matrixCursor(1);
+        final MatrixCursor otherLatest = matrixCursor(2);
+        whenQueryWithCancellationSignal()
+                .thenReturn(first, firstSuperseded, firstLatest, firstCancelled);
+        when(contentResolver.query(
+                eq(otherUri),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenReturn(other, otherLatest);
+
+        final TestSubscriber<MultiCursorResult> observer = RxCursorLoader
+                .multi(
+                        contentResolver,
+                        Arrays.asList(
+                                buildQuery(),
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(otherUri)
+                                        .create()),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.LATEST,
+                        new RxCursorLoader.Options.Builder().create())
+                .test(1);
+        observer.assertValueCount(1);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        final ArgumentCaptor<ContentObserver> otherCaptor = ArgumentCaptor.forClass(
+                ContentObserver.class);
+        verify(contentResolver).registerContentObserver(
+                eq(otherUri), eq(true), otherCaptor.capture());
+
+        // Without demand, so these are merged instead of dropped
+        contentObserver.onChange(false);
+        contentObserver.onChange(false);
+        otherCaptor.getValue().onChange(false);
+        observer.assertValueCount(1);
+        assertTrue(firstSuperseded.isClosed());
+
+        observer.request(1);
+        observer.assertValueCount(2);
+        final MultiCursorResult result = observer.values().get(1);
+        assertSame(firstLatest, result.get(0));
+        assertTrue(result.isChanged(0));
+        assertSame(otherLatest, result.get(1));
+        assertTrue(result.isChanged(1));
+        assertFalse(firstLatest.isClosed());
+        assertFalse(otherLatest.isClosed());
+
+        // Not delivered before cancel, so closed by the loader
+        contentObserver.onChange(false);
+        observer.dispose();
+        assertTrue(firstCancelled.isClosed());
+        assertFalse(firstLatest.isClosed());
+        assertFalse(otherLatest.isClosed());
+    }
+
+    @Test
+    public void resultCacheEmitsCachedResultBeforeLoadedOne() {
+        final MatrixCursor first = matrixCursor(2);
+        final MatrixCursor second = matrixCursor(3);
+        whenQueryWithCancellationSignal().thenReturn(first, second);
+
+        final RxCursorLoader.Options options = new RxCursorLoader.Options.Builder()
+                .setResultCache(ResultCache.withMaxRows(10))
+                .create();
+
+        RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        options)
+                .test()
+                .dispose();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        options)
+                .test();
+
+        observer.assertValueCount(2);
+        final Cursor cached = observer.values().get(0);
+        assertNotSame(first, cached);
+        assertEquals(2, cached.getCount());
+        assertTrue(cached.moveToLast());
+        assertEquals(1, cached.getLong(0));
+        assertSame(second, observer.values().get(1));
+        assertEquals(1, options.getStats().getCacheHitCount());
+    }
+
+    @Test
+    public void snapshotStoreEmitsStoredResultOfPreviousLoader() throws IOException {
+        final MatrixCursor stored = new MatrixCursor(
+                new String[]{"_id", "name", "score", "data", "empty"});
+        stored.addRow(new Object[]{7L, "a", 0.5d, new byte[]{1, 2}, null});
+        final MatrixCursor live = matrixCursor(1);
+        whenQueryWithCancellationSignal().thenReturn(stored, live);
+
+        final File directory = File.createTempFile("snapshots", null);
+        assertTrue(directory.delete());
+
+        RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setSnapshotStore(new SnapshotStore(directory, 1))
+                                .create())
+                .test()
+                .dispose();
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setSnapshotStore(new SnapshotStore(directory, 1))
+                                .create())
+                .test();
+
+        observer.assertValueCount(2);
+        final Cursor snapshot = observer.values().get(0);
+        assertTrue(snapshot.moveToFirst());
+        assertEquals(7L, snapshot.getLong(0));
+        assertEquals("a", snapshot.getString(1));
+        assertEquals(0.5d, snapshot.getDouble(2), 0d);
+        assertArrayEquals(new byte[]{1, 2}, snapshot.getBlob(3));
+        assertTrue(snapshot.isNull(4));
+        assertSame(live, observer.values().get(1));
+
+        new SnapshotStore(directory, 1).clear();
+    }
+
+    @Test
+    public void snapshotStoreTreatsCorruptFileAsMiss() throws IOException {
+        final MatrixCursor stored = matrixCursor(1);
+        final MatrixCursor live = matrixCursor(1);
+        whenQueryWithCancellationSignal().thenReturn(stored, live);
+
+        final File directory = File.createTempFile("snapshots", null);
+        assertTrue(directory.delete());
+
+        RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setSnapshotStore(new SnapshotStore(directory, 1))
+                                .create())
+                .test()
+                .dispose();
+
+        // Keep the header, and claim a column count that does not fit the file
+        final File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        final RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+        try {
+            file.seek(12);
+            file.writeInt(Integer.MAX_VALUE);
+        } finally {
+            file.close();
+        }
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setSnapshotStore(new SnapshotStore(directory, 1))
+                                .create())
+                .test();
+
+        observer.assertNoErrors();
+        observer.assertValues(live);
+
+        observer.dispose();
+        new SnapshotStore(directory, 1).clear();
+    }
+
+    @Test
+    public void primitiveColumnsReadsColumnsIndexesAndClosesCursor() {
+        final MatrixCursor c = new MatrixCursor(new String[]{"_id", "count", "score"});
+        c.addRow(new Object[]{10L, 1, 0.5d});
+        c.addRow(new Object[]{20L, null, 1.5d});
+        c.addRow(new Object[]{10L, 3, 2.5d});
+        whenQueryWithCancellationSignal().thenReturn(c);
+
+        final TestSubscriber<PrimitiveColumns> observer = RxCursorLoader
+                .primitiveColumns(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        new PrimitiveColumns.Spec.Builder()
+                                .addLongColumn("_id")
+                                .addIntColumn("count")
+                                .addDoubleColumn("score")
+                                .setIndexedColumn("_id")
+                                .create(),
+                        RxCursorLoader.Options.DEFAULT)
+                .test();
+
+        observer.assertValueCount(1);
+        final PrimitiveColumns columns = observer.values().get(0);
+        assertEquals(3, columns.getRowCount());
+        assertArrayEquals(new long[]{10L, 20L, 10L}, columns.getLongs("_id"));
+        assertArrayEquals(new int[]{1, 0, 3}, columns.getInts("count"));
+        assertArrayEquals(new double[]{0.5d, 1.5d, 2.5d}, columns.getDoubles("score"), 0d);
+        assertEquals(0, columns.indexOf(10L));
+        assertEquals(1, columns.indexOf(20L));
+        assertFalse(columns.contains(30L));
+        assertTrue(c.isClosed());
+
+        observer.dispose();
+    }
+
+    @Test
+    public void detachedCursorsCopyResultAndCloseSourceCursor() {
+        final MatrixCursor source = new MatrixCursor(
+                new String[]{"_id", "name", "score", "data", "empty"});
+        source.addRow(new Object[]{1L, "a", 0.5d, new byte[]{1, 2}, null});
+        source.addRow(new Object[]{2L, "a", "1.5", null, null});
+        whenQueryWithCancellationSignal().thenReturn(source);
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(
+                        contentResolver,
+                        buildQuery(),
+                        Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER,
+                        new RxCursorLoader.Options.Builder()
+                                .setDetachedCursors(true)
+                                .create())
+                .test();
+
+        observer.assertValueCount(1);
+        assertTrue(source.isClosed());
+
+        final Cursor detached = observer.values().get(0);
+        assertNotSame(source, detached);
+        assertArrayEquals(source.getColumnNames(), detached.getColumnNames());
+        assertEquals(2, detached.getCount());
+
+        assertTrue(detached.moveToFirst());
+        assertEquals(1L, detached.getLong(0));
+        assertEquals("1", detached.getString(0));
+        assertEquals("a", detached.getString(1));
+        assertEquals(0.5d, detached.getDouble(2), 0d);
+        assertArrayEquals(new byte[]{1, 2}, detached.getBlob(3));
+        assertTrue(detached.isNull(4));
+        assertEquals(0, detached.getInt(4));
+
+        assertTrue(detached.moveToNext());
+        assertEquals(2, detached.getInt(0));
+        assertEquals(1.5d, detached.getDouble(2), 0d);
+        assertNull(detached.getBlob(3));
+        assertFalse(detached.moveToNext());
+
+        observer.dispose();
+        detached.close();
+    }
+
+    @Test
+    public void reloadSchedulerLimitsConcurrentLoadsAndRunsHigherPriorityFirst() {
+        final MatrixCursor first = matrixCursor(1);
+        final MatrixCursor second = matrixCursor(2);
+        final MatrixCursor third = matrixCursor(3);
+        whenQueryWithCancellationSignal().thenReturn(first, second, third);
+
+        final TestScheduler scheduler = new TestScheduler();
+        final ReloadScheduler reloadScheduler = new ReloadScheduler(scheduler, 1);
+        final RxCursorLoader.Options lowPriority = new RxCursorLoader.Options.Builder()
+                .setReloadScheduler(reloadScheduler, ReloadScheduler.PRIORITY_DEFAULT)
+                .create();
+        final RxCursorLoader.Options highPriority = new RxCursorLoader.Options.Builder()
+                .setReloadScheduler(reloadScheduler, ReloadScheduler.PRIORITY_DEFAULT + 1)
+                .create();
+
+        final TestSubscriber<Cursor> running = RxCursorLoader
+                .flowable(contentResolver, buildQuery(), Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER, lowPriority)
+                .test();
+        final TestSubscriber<Cursor> queuedLow = RxCursorLoader
+                .flowable(contentResolver, buildQuery(), Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER, lowPriority)
+                .test();
+        final TestSubscriber<Cursor> queuedHigh = RxCursorLoader
+                .flowable(contentResolver, buildQuery(), Schedulers.trampoline(),
+                        BackpressureStrategy.BUFFER, highPriority)
+                .test();
+
+        assertEquals(2, reloadScheduler.getQueuedCount());
+        running.assertNoValues();
+
+        scheduler.triggerActions();
+
+        assertEquals(0, reloadScheduler.getQueuedCount());
+        running.assertValue(first);
+        queuedHigh.assertValue(second);
+        queuedLow.assertValue(third);
+
+        running.dispose();
+        queuedLow.dispose();
+        queuedHigh.dispose();
+    }
+
+    @Test
+    public void flowableDoesNotQueryWithoutDemand() {
+        final Cursor[] cursors = givenQueryReturnsCursors(2);
+
+        final TestSubscriber<Cursor> observer = RxCursorLoader
+                .flowable(contentResolver, buildQuery(), Schedulers.trampoline(),
+                        BackpressureStrategy.LATEST)
+                .test(0);
+        verifyQueryCount(0);
+
+        observer.request(1);
+        observer.assertValues(cursors[0]);
+        verifyQueryCount(1);
+
+        final ContentObserver contentObserver = captureContentObserver();
+        contentObserver.onChange(false);
+        contentObserver.onChange(false);
+        verifyQueryCount(1);
+
+        observer.request(1);
+        observer.assertValues(cursors[0], cursors[1]);
+        verifyQueryCount(2);
+
+        observer.dispose();
+    }
+
+    private void verifyQueryCount(final int count) {
+        verify(contentResolver, times(count)).query(
+                eq(URI),
+                (String[]) any(),
+                (String) any(),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any());
+    }
+
+    @Test
+    public void singlesAllLoadsEveryQueryAndKeepsFailuresSeparate() {
+        final Cursor first = mock(Cursor.class);
+        final Cursor second = mock(Cursor.class);
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                eq("first"),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenReturn(first);
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                eq("second"),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenReturn(second);
+
+        final RxCursorLoader.Query otherAuthority = new RxCursorLoader.Query.Builder()
+                .setContentUri(Uri.parse("content://com.doctoror.rxcursorloader.test.other"))
+                .create();
+
+        final TestObserver<List<QueryResult>> observer = RxCursorLoader
+                .singlesAll(
+                        contentResolver,
+                        Arrays.asList(
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("first")
+                                        .create(),
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("second")
+                                        .create(),
+                                otherAuthority),
+                        2,
+                        0,
+                        TimeUnit.SECONDS,
+                        Schedulers.trampoline())
+                .test();
+
+        observer.assertValueCount(1);
+        final List<QueryResult> results = observer.values().get(0);
+        assertEquals(3, results.size());
+        assertSame(first, results.get(0).getCursor());
+        assertSame(second, results.get(1).getCursor());
+        assertFalse(results.get(2).isSuccessful());
+        assertTrue(results.get(2).getError() instanceof QueryReturnedNullException);
+        assertSame(otherAuthority, results.get(2).getQuery());
+    }
+
+    @Test
+    public void singlesClosesCursorsOfResultsNotDeliveredWhenCancelled() {
+        final Cursor first = mock(Cursor.class);
+        final Cursor second = mock(Cursor.class);
+        givenQueryWithSelectionReturns("first", first);
+        givenQueryWithSelectionReturns("second", second);
+
+        final TestSubscriber<QueryResult> subscriber = RxCursorLoader
+                .singles(
+                        contentResolver,
+                        Arrays.asList(
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("first")
+                                        .create(),
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("second")
+                                        .create()),
+                        2,
+                        0,
+                        TimeUnit.SECONDS,
+                        Schedulers.trampoline())
+                .test(1);
+
+        subscriber.assertValueCount(1);
+        final Cursor delivered = subscriber.values().get(0).getCursor();
+        final Cursor queued = delivered == first ? second : first;
+
+        subscriber.cancel();
+
+        verify(queued).close();
+        verify(delivered, never()).close();
+    }
+
+    @Test
+    public void singlesAllClosesCollectedCursorsWhenDisposed() {
+        final Cursor first = mock(Cursor.class);
+        final Cursor second = mock(Cursor.class);
+        givenQueryWithSelectionReturns("first", first);
+
+        final TestObserver<List<QueryResult>> observer = new TestObserver<>();
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                eq("second"),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenAnswer(new Answer<Cursor>() {
+
+                    @Override
+                    public Cursor answer(final InvocationOnMock invocation) {
+                        // Disposed while the first result is already collected
+                        observer.dispose();
+                        return second;
+                    }
+                });
+
+        RxCursorLoader
+                .singlesAll(
+                        contentResolver,
+                        Arrays.asList(
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("first")
+                                        .create(),
+                                new RxCursorLoader.Query.Builder()
+                                        .setContentUri(URI)
+                                        .setSelection("second")
+                                        .create()),
+                        1,
+                        0,
+                        TimeUnit.SECONDS,
+                        Schedulers.trampoline())
+                .subscribe(observer);
+
+        observer.assertNoValues();
+        verify(first).close();
+        verify(second).close();
+    }
+
+    private void givenQueryWithSelectionReturns(
+            @NonNull final String selection,
+            @NonNull final Cursor cursor) {
+        when(contentResolver.query(
+                eq(URI),
+                (String[]) any(),
+                eq(selection),
+                (String[]) any(),
+                (String) any(),
+                (CancellationSignal) any()))
+                .thenReturn(cursor);
+    }
 }
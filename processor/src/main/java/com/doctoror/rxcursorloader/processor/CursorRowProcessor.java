@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.processor;
+
+import com.doctoror.rxcursorloader.annotations.Column;
+import com.doctoror.rxcursorloader.annotations.CursorRow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a row mapper with the projection for every {@link CursorRow} class.
+ */
+public final class CursorRowProcessor extends AbstractProcessor {
+
+    private static final String SUFFIX = "_RowMapper";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<>(Arrays.asList(
+                CursorRow.class.getCanonicalName(),
+                Column.class.getCanonicalName()));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(
+            final Set<? extends TypeElement> annotations,
+            final RoundEnvironment roundEnv) {
+        for (final Element element : roundEnv.getElementsAnnotatedWith(CursorRow.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@CursorRow must be applied to a class");
+                continue;
+            }
+            final TypeElement type = (TypeElement) element;
+            final List<ColumnField> fields = collectFields(type);
+            if (fields != null && hasAccessibleConstructor(type)) {
+                write(type, fields);
+            }
+        }
+        for (final Element element : roundEnv.getElementsAnnotatedWith(Column.class)) {
+            if (element.getEnclosingElement().getAnnotation(CursorRow.class) == null) {
+                error(element, "@Column field must be declared in a @CursorRow class");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the fields, or null if any of them is invalid
+     */
+    private List<ColumnField> collectFields(final TypeElement type) {
+        final List<ColumnField> fields = new ArrayList<>();
+        boolean valid = true;
+        for (final Element member : type.getEnclosedElements()) {
+            final Column column = member.getAnnotation(Column.class);
+            if (column == null) {
+                continue;
+            }
+            final Set<Modifier> modifiers = member.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)
+                    || modifiers.contains(Modifier.FINAL)
+                    || modifiers.contains(Modifier.STATIC)) {
+                error(member, "@Column field must not be private, final or static");
+                valid = false;
+                continue;
+            }
+            final String getter = getterExpression(member.asType());
+            if (getter == null) {
+                error(member, "Unsupported @Column field type " + member.asType());
+                valid = false;
+                continue;
+            }
+            fields.add(new ColumnField(
+                    member.getSimpleName().toString(), column.value(), getter));
+        }
+        if (fields.isEmpty() && valid) {
+            error(type, "@CursorRow class must have at least one @Column field");
+            valid = false;
+        }
+        return valid ? fields : null;
+    }
+
+    private boolean hasAccessibleConstructor(final TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@CursorRow class must not be abstract");
+            return false;
+        }
+        if (type.getNestingKind().isNested()
+                && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "Nested @CursorRow class must be static");
+            return false;
+        }
+        for (final Element member : type.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.CONSTRUCTOR
+                    && ((ExecutableElement) member).getParameters().isEmpty()
+                    && !member.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(type, "@CursorRow class must have a non-private constructor without arguments");
+        return false;
+    }
+
+    /**
+     * @return the expression that reads the value, with %s for the column index, or null if
+     * the type is not supported
+     */
+    private static String getterExpression(final TypeMirror type) {
+        switch (type.getKind()) {
+            case LONG:
+                return "cursor.getLong(%s)";
+
+            case INT:
+                return "cursor.getInt(%s)";
+
+            case SHORT:
+                return "cursor.getShort(%s)";
+
+            case DOUBLE:
+                return "cursor.getDouble(%s)";
+
+            case FLOAT:
+                return "cursor.getFloat(%s)";
+
+            case BOOLEAN:
+                return "cursor.getInt(%s) != 0";
+
+            case ARRAY:
+                return "byte[]".equals(type.toString()) ? "cursor.getBlob(%s)" : null;
+
+            case DECLARED:
+                return declaredGetterExpression(type.toString());
+
+            default:
+                return null;
+        }
+    }
+
+    private static String declaredGetterExpression(final String type) {
+        switch (type) {
+            case "java.lang.String":
+                return "cursor.getString(%s)";
+
+            case "java.lang.Long":
+                return nullable("cursor.getLong(%s)");
+
+            case "java.lang.Integer":
+                return nullable("cursor.getInt(%s)");
+
+            case "java.lang.Short":
+                return nullable("cursor.getShort(%s)");
+
+            case "java.lang.Double":
+                return nullable("cursor.getDouble(%s)");
+
+            case "java.lang.Float":
+                return nullable("cursor.getFloat(%s)");
+
+            case "java.lang.Boolean":
+                return nullable("cursor.getInt(%s) != 0");
+
+            default:
+                return null;
+        }
+    }
+
+    private static String nullable(final String expression) {
+        return "cursor.isNull(%1$s) ? null : " + expression.replace("%s", "%1$s");
+    }
+
+    private void write(final TypeElement type, final List<ColumnField> fields) {
+        final String packageName = packageOf(type).getQualifiedName().toString();
+        final String modelName = type.getQualifiedName().toString();
+        final String relativeName = packageName.isEmpty()
+                ? modelName
+                : modelName.substring(packageName.length() + 1);
+        final String mapperName = relativeName.replace('.', '_') + SUFFIX;
+        final String visibility = type.getModifiers().contains(Modifier.PUBLIC) ? "public " : "";
+
+        final StringBuilder s = new StringBuilder(2048);
+        s.append("// Generated by ").append(CursorRowProcessor.class.getSimpleName())
+                .append(". Do not edit.\n");
+        if (!packageName.isEmpty()) {
+            s.append("package ").append(packageName).append(";\n\n");
+        }
+        s.append("import android.database.Cursor;\n\n");
+        s.append("import com.doctoror.rxcursorloader.RowMapper;\n\n");
+
+        s.append("/**\n");
+        s.append(" * {@link RowMapper} and projection of {@link ").append(relativeName)
+                .append("}.\n");
+        s.append(" */\n");
+        s.append(visibility).append("final class ").append(mapperName)
+                .append(" implements RowMapper<").append(relativeName).append("> {\n\n");
+
+        s.append("    /**\n");
+        s.append("     * The columns to query, in the order of fields.\n");
+        s.append("     */\n");
+        s.append("    public static final String[] PROJECTION = new String[]{\n");
+        for (int i = 0; i < fields.size(); i++) {
+            s.append("            \"").append(escape(fields.get(i).column)).append('"')
+                    .append(i == fields.size() - 1 ? "\n" : ",\n");
+        }
+        s.append("    };\n\n");
+
+        s.append("    public static final ").append(mapperName).append(" INSTANCE = new ")
+                .append(mapperName).append("();\n\n");
+
+        s.append("    private ").append(mapperName).append("() {\n");
+        s.append("    }\n\n");
+
+        s.append("    /**\n");
+        s.append("     * Reads the current row of a {@link Cursor} queried with")
+                .append(" {@link #PROJECTION}.\n");
+        s.append("     */\n");
+        s.append("    public static ").append(relativeName)
+                .append(" read(final Cursor cursor) {\n");
+        appendReads(s, relativeName, fields, false);
+        s.append("    }\n\n");
+
+        s.append("    @Override\n");
+        s.append("    public ").append(relativeName)
+                .append(" map(final Cursor cursor, final int[] columnIndices) {\n");
+        appendReads(s, relativeName, fields, true);
+        s.append("    }\n");
+        s.append("}\n");
+
+        final String fileName = packageName.isEmpty()
+                ? mapperName
+                : packageName + '.' + mapperName;
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                    .createSourceFile(fileName, type);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(s.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(type, "Failed to write " + fileName + ": " + e.getMessage());
+        }
+    }
+
+    private static void appendReads(
+            final StringBuilder s,
+            final String modelName,
+            final List<ColumnField> fields,
+            final boolean indirect) {
+        s.append("        final ").append(modelName).append(" row = new ").append(modelName)
+                .append("();\n");
+        for (int i = 0; i < fields.size(); i++) {
+            final ColumnField field = fields.get(i);
+            final String index = indirect ? "columnIndices[" + i + "]" : String.valueOf(i);
+            s.append("        row.").append(field.name).append(" = ")
+                    .append(String.format(field.getter, index)).append(";\n");
+        }
+        s.append("        return row;\n");
+    }
+
+    private static PackageElement packageOf(final Element element) {
+        Element e = element;
+        while (e.getKind() != ElementKind.PACKAGE) {
+            e = e.getEnclosingElement();
+        }
+        return (PackageElement) e;
+    }
+
+    private static String escape(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(final Element element, final String message) {
+        final Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static final class ColumnField {
+
+        final String name;
+        final String column;
+        final String getter;
+
+        ColumnField(final String name, final String column, final String getter) {
+            this.name = name;
+            this.column = column;
+            this.getter = getter;
+        }
+    }
+}
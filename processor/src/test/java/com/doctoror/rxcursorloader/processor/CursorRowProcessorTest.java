@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2018 Yaroslav Mytkalyk
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.doctoror.rxcursorloader.processor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class CursorRowProcessorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Stands in for the Android class, with the methods the generated code calls.
+     */
+    private static final JavaFileObject CURSOR = source("android.database.Cursor",
+            "package android.database;",
+            "public interface Cursor {",
+            "    boolean isNull(int column);",
+            "    long getLong(int column);",
+            "    int getInt(int column);",
+            "    short getShort(int column);",
+            "    double getDouble(int column);",
+            "    float getFloat(int column);",
+            "    String getString(int column);",
+            "    byte[] getBlob(int column);",
+            "}");
+
+    private static final JavaFileObject ROW_MAPPER = source(
+            "com.doctoror.rxcursorloader.RowMapper",
+            "package com.doctoror.rxcursorloader;",
+            "import android.database.Cursor;",
+            "public interface RowMapper<T> {",
+            "    T map(Cursor cursor, int[] columnIndices);",
+            "}");
+
+    @Test
+    public void mapsEverySupportedFieldType() throws Exception {
+        final Compilation compilation = compile(source("test.AllTypes",
+                "package test;",
+                "import com.doctoror.rxcursorloader.annotations.Column;",
+                "import com.doctoror.rxcursorloader.annotations.CursorRow;",
+                "@CursorRow",
+                "public final class AllTypes {",
+                "    @Column(\"long\") long primitiveLong;",
+                "    @Column(\"int\") int primitiveInt;",
+                "    @Column(\"short\") short primitiveShort;",
+                "    @Column(\"double\") double primitiveDouble;",
+                "    @Column(\"float\") float primitiveFloat;",
+                "    @Column(\"boolean\") boolean primitiveBoolean;",
+                "    @Column(\"blob\") byte[] blob;",
+                "    @Column(\"string\") String string;",
+                "    @Column(\"boxedLong\") Long boxedLong;",
+                "    @Column(\"boxedInt\") Integer boxedInt;",
+                "    @Column(\"boxedShort\") Short boxedShort;",
+                "    @Column(\"boxedDouble\") Double boxedDouble;",
+                "    @Column(\"boxedFloat\") Float boxedFloat;",
+                "    @Column(\"boxedBoolean\") Boolean boxedBoolean;",
+                "}"));
+        compilation.assertSuccess();
+
+        final Class<?> mapper = compilation.loadClass("test.AllTypes_RowMapper");
+        assertArrayEquals(new String[]{
+                "long", "int", "short", "double", "float", "boolean", "blob", "string",
+                "boxedLong", "boxedInt", "boxedShort", "boxedDouble", "boxedFloat",
+                "boxedBoolean"
+        }, (String[]) mapper.getField("PROJECTION").get(null));
+
+        final byte[] blob = new byte[]{1, 2};
+        final Object[] row = new Object[]{
+                1L, 2, (short) 3, 4.5d, 5.5f, 1, blob, "six",
+                7L, 8, (short) 9, 10.5d, 11.5f, 0
+        };
+
+        final Object read = compilation.read(mapper, row);
+        assertEquals(1L, field(read, "primitiveLong"));
+        assertEquals(2, field(read, "primitiveInt"));
+        assertEquals((short) 3, field(read, "primitiveShort"));
+        assertEquals(4.5d, field(read, "primitiveDouble"));
+        assertEquals(5.5f, field(read, "primitiveFloat"));
+        assertEquals(true, field(read, "primitiveBoolean"));
+        assertArrayEquals(blob, (byte[]) field(read, "blob"));
+        assertEquals("six", field(read, "string"));
+        assertEquals(7L, field(read, "boxedLong"));
+        assertEquals(8, field(read, "boxedInt"));
+        assertEquals((short) 9, field(read, "boxedShort"));
+        assertEquals(10.5d, field(read, "boxedDouble"));
+        assertEquals(11.5f, field(read, "boxedFloat"));
+        assertEquals(false, field(read, "boxedBoolean"));
+    }
+
+    @Test
+    public void mapReadsThroughColumnIndices() throws Exception {
+        final Compilation compilation = compile(source("test.Pair",
+                "package test;",
+                "import com.doctoror.rxcursorloader.annotations.Column;",
+                "import com.doctoror.rxcursorloader.annotations.CursorRow;",
+                "@CursorRow",
+                "final class Pair {",
+                "    @Column(\"first\") String first;",
+                "    @Column(\"second\") String second;",
+                "}"));
+        compilation.assertSuccess();
+
+        final Class<?> mapper = compilation.loadClass("test.Pair_RowMapper");
+        final Object row = compilation.map(
+                mapper, new Object[]{"unused", "b", "a"}, new int[]{2, 1});
+
+        assertEquals("a", field(row, "first"));
+        assertEquals("b", field(row, "second"));
+    }
+
+    @Test
+    public void boxedFieldsAreNullForNullColumns() throws Exception {
+        final Compilation compilation = compile(source("test.Nullable",
+                "package test;",
+                "import com.doctoror.rxcursorloader.annotations.Column;",
+                "import com.doctoror.rxcursorloader.annotations.CursorRow;",
+                "@CursorRow",
+                "final class Nullable {",
+                "    @Column(\"boxedLong\") Long boxedLong;",
+                "    @Column(\"boxedInt\") Integer boxedInt;",
+                "    @Column(\"boxedShort\") Short boxedShort;",
+                "    @Column(\"boxedDouble\") Double boxedDouble;",
+                "    @Column(\"boxedFloat\") Float boxedFloat;",
+                "    @Column(\"boxedBoolean\") Boolean boxedBoolean;",
+                "    @Column(\"string\") String string;",
+                "    @Column(\"blob\") byte[] blob;",
+                "}"));
+        compilation.assertSuccess();
+
+        final Object row = compilation.read(
+                compilation.loadClass("test.Nullable_RowMapper"), new Object[8]);
+        for (final String name : Arrays.asList(
+                "boxedLong", "boxedInt", "boxedShort", "boxedDouble", "boxedFloat",
+                "boxedBoolean", "string", "blob")) {
+            assertNull(name, field(row, name));
+        }
+    }
+
+    @Test
+    public void nestedClassMapperIsNamedAfterEnclosingClasses() throws Exception {
+        final Compilation compilation = compile(source("test.Outer",
+                "package test;",
+                "import com.doctoror.rxcursorloader.annotations.Column;",
+                "import com.doctoror.rxcursorloader.annotations.CursorRow;",
+                "public final class Outer {",
+                "    static final class Middle {",
+                "        @CursorRow",
+                "        public static final class Inner {",
+                "            @Column(\"name\") String name;",
+                "        }",
+                "    }",
+                "}"));
+        compilation.assertSuccess();
+
+        final Object row = compilation.read(
+                compilation.loadClass("test.Outer_Middle_Inner_RowMapper"),
+                new Object[]{"name"});
+        assertEquals("test.Outer$Middle$Inner", row.getClass().getName());
+        assertEquals("name", field(row, "name"));
+    }
+
+    @Test
+    public void reportsPrivateField() {
+        assertError("@Column field must not be private, final or static",
+                "@CursorRow final class Row { @Column(\"a\") private String a; }");
+    }
+
+    @Test
+    public void reportsFinalField() {
+        assertError("@Column field must not be private, final or static",
+                "@CursorRow final class Row { @Column(\"a\") final String a = null; }");
+    }
+
+    @Test
+    public void reportsStaticField() {
+        assertError("@Column field must not be private, final or static",
+                "@CursorRow final class Row { @Column(\"a\") static String a; }");
+    }
+
+    @Test
+    public void reportsUnsupportedFieldType() {
+        assertError("Unsupported @Column field type char",
+                "@CursorRow final class Row { @Column(\"a\") char a; }");
+        assertError("Unsupported @Column field type int[]",
+                "@CursorRow final class Row { @Column(\"a\") int[] a; }");
+        assertError("Unsupported @Column field type java.lang.Object",
+                "@CursorRow final class Row { @Column(\"a\") Object a; }");
+    }
+
+    @Test
+    public void reportsClassWithoutColumns() {
+        assertError("@CursorRow class must have at least one @Column field",
+                "@CursorRow final class Row { String a; }");
+    }
+
+    @Test
+    public void reportsNonClass() {
+        assertError("@CursorRow must be applied to a class",
+                "@CursorRow interface Row { }");
+    }
+
+    @Test
+    public void reportsAbstractClass() {
+        assertError("@CursorRow class must not be abstract",
+                "@CursorRow abstract class Row { @Column(\"a\") String a; }");
+    }
+
+    @Test
+    public void reportsInnerClass() {
+        assertError("Nested @CursorRow class must be static",
+                "final class Row { @CursorRow final class Inner { @Column(\"a\") String a; } }");
+    }
+
+    @Test
+    public void reportsClassWithoutNoArgConstructor() {
+        assertError("@CursorRow class must have a non-private constructor without arguments",
+                "@CursorRow final class Row { @Column(\"a\") String a; Row(String a) { } }");
+        assertError("@CursorRow class must have a non-private constructor without arguments",
+                "@CursorRow final class Row { @Column(\"a\") String a; private Row() { } }");
+    }
+
+    @Test
+    public void reportsColumnOutsideCursorRow() {
+        assertError("@Column field must be declared in a @CursorRow class",
+                "final class Row { @Column(\"a\") String a; }");
+    }
+
+    private static void assertError(final String message, final String declaration) {
+        final Compilation compilation = compile(source("test.Row",
+                "package test;",
+                "import com.doctoror.rxcursorloader.annotations.Column;",
+                "import com.doctoror.rxcursorloader.annotations.CursorRow;",
+                declaration));
+        assertFalse("Expected to fail: " + declaration, compilation.success);
+        assertTrue("Expected \"" + message + "\" in " + compilation.errors,
+                compilation.errors.contains(message));
+        assertFalse("No mapper expected for " + declaration,
+                compilation.classes.containsKey("test.Row_RowMapper"));
+    }
+
+    private static Object field(final Object object, final String name) throws Exception {
+        final Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    private static JavaFileObject source(final String className, final String... lines) {
+        final StringBuilder content = new StringBuilder();
+        for (final String line : lines) {
+            content.append(line).append('\n');
+        }
+        return new MemoryFile(className, JavaFileObject.Kind.SOURCE, content.toString());
+    }
+
+    private static Compilation compile(final JavaFileObject source) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final MemoryFileManager fileManager = new MemoryFileManager(
+                compiler.getStandardFileManager(diagnostics, Locale.ROOT, UTF_8));
+
+        final JavaCompiler.CompilationTask task = compiler.getTask(
+                null,
+                fileManager,
+                diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path")),
+                null,
+                Arrays.asList(CURSOR, ROW_MAPPER, source));
+        task.setProcessors(Collections.singletonList(new CursorRowProcessor()));
+        final boolean success = task.call();
+
+        final List<String> errors = new ArrayList<>();
+        for (final Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(d.getMessage(Locale.ROOT));
+            }
+        }
+        return new Compilation(success, errors, fileManager.mClasses);
+    }
+
+    private static final class Compilation extends ClassLoader {
+
+        final boolean success;
+        final List<String> errors;
+        final Map<String, MemoryFile> classes;
+
+        Compilation(
+                final boolean success,
+                final List<String> errors,
+                final Map<String, MemoryFile> classes) {
+            super(CursorRowProcessorTest.class.getClassLoader());
+            this.success = success;
+            this.errors = errors;
+            this.classes = classes;
+        }
+
+        void assertSuccess() {
+            if (!success) {
+                fail("Compilation failed: " + errors);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(final String name) throws ClassNotFoundException {
+            final MemoryFile file = classes.get(name);
+            if (file == null) {
+                throw new ClassNotFoundException(name);
+            }
+            final byte[] bytes = file.mContent.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        /**
+         * Calls the static read(Cursor) of the mapper.
+         */
+        Object read(final Class<?> mapper, final Object[] row) throws Exception {
+            final Class<?> cursorClass = loadClass("android.database.Cursor");
+            final Method read = mapper.getMethod("read", cursorClass);
+            // Mappers of package-private classes are package-private
+            read.setAccessible(true);
+            return read.invoke(null, cursor(cursorClass, row));
+        }
+
+        /**
+         * Calls map(Cursor, int[]) of the mapper INSTANCE.
+         */
+        Object map(
+                final Class<?> mapper,
+                final Object[] row,
+                final int[] columnIndices) throws Exception {
+            final Class<?> cursorClass = loadClass("android.database.Cursor");
+            final Method map = mapper.getMethod("map", cursorClass, int[].class);
+            map.setAccessible(true);
+            final Field instance = mapper.getField("INSTANCE");
+            instance.setAccessible(true);
+            return map.invoke(
+                    instance.get(null),
+                    cursor(cursorClass, row),
+                    columnIndices);
+        }
+
+        /**
+         * @return a Cursor positioned at the row, which holds Numbers, Strings and byte arrays
+         */
+        private Object cursor(final Class<?> cursorClass, final Object[] row) {
+            return Proxy.newProxyInstance(this, new Class<?>[]{cursorClass},
+                    new InvocationHandler() {
+
+                        @Override
+                        public Object invoke(
+                                final Object proxy,
+                                final Method method,
+                                final Object[] args) {
+                            final Object value = row[(Integer) args[0]];
+                            switch (method.getName()) {
+                                case "isNull":
+                                    return value == null;
+
+                                case "getLong":
+                                    return ((Number) value).longValue();
+
+                                case "getInt":
+                                    return ((Number) value).intValue();
+
+                                case "getShort":
+                                    return ((Number) value).shortValue();
+
+                                case "getDouble":
+                                    return ((Number) value).doubleValue();
+
+                                case "getFloat":
+                                    return ((Number) value).floatValue();
+
+                                default:
+                                    return value;
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Keeps compiled classes and generated sources in memory.
+     */
+    private static final class MemoryFileManager
+            extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        final Map<String, MemoryFile> mClasses = new HashMap<>();
+
+        MemoryFileManager(final StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(
+                final JavaFileManager.Location location,
+                final String className,
+                final JavaFileObject.Kind kind,
+                final FileObject sibling) {
+            final MemoryFile file = new MemoryFile(className, kind, null);
+            if (kind == JavaFileObject.Kind.CLASS) {
+                mClasses.put(className, file);
+            }
+            return file;
+        }
+    }
+
+    private static final class MemoryFile extends SimpleJavaFileObject {
+
+        final ByteArrayOutputStream mContent = new ByteArrayOutputStream();
+
+        MemoryFile(final String className, final Kind kind, final String content) {
+            super(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind);
+            if (content != null) {
+                final byte[] bytes = content.getBytes(UTF_8);
+                mContent.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+            return new String(mContent.toByteArray(), UTF_8);
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+            mContent.reset();
+            return mContent;
+        }
+    }
+}